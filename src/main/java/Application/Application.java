@@ -1,9 +1,11 @@
 package Application;
 
 import Application.Controller.FlightController;
+import Application.Util.ArchiveSegmentStore;
 import Application.Util.ConnectionUtil;
 import io.javalin.Javalin;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -28,28 +30,67 @@ public class Application {
     /**
      * For the purpose of this short exercise, this method will destroy and set up a new flight table.
      * This is not a normal way to set up your tables, in real projects you should set up your database
-     * schema in a SQL editor such as DBeaver or DataGrip. Do not change anything in this method.
+     * schema in a SQL editor such as DBeaver or DataGrip.
+     *
+     * departure_key and arrival_key are generated from the city names normalized the same way as
+     * CityIndex.normalize, and are indexed so that case-insensitive route lookups stay index-backed.
+     *
+     * retired marks flights waiting to be moved to the archive, and created_at is used to archive flights older than
+     * the retention period (see ArchiveService). Both are indexed together for the compaction job. The archive of the
+     * old table is deleted along with it, since its flight IDs are handed out again from the start.
+     *
+     * departure_time and arrival_time are the optional schedule of a flight. The (departure_key, departure_time) index
+     * answers "flights leaving a city within a time window" with a range scan.
+     *
+     * When flights are sharded (see ConnectionUtil), the table is created in every shard with that shard's flight_id
+     * sequence, and every dummy flight is inserted into the shard of its departure city.
      */
     public static void databaseSetup(){
+        String[][] flights = {
+                {"tampa", "dallas"},
+                {"tampa", "reston"},
+                {"reston", "morgantown"},
+                {"morgantown", "dallas"},
+                {"tampa", "dallas"},
+                {"dallas", "tampa"}};
+        int shards = ConnectionUtil.getShardCount();
         try {
-            Connection conn = ConnectionUtil.getConnection();
-            PreparedStatement ps1 = conn.prepareStatement("drop table if exists flight");
-            ps1.executeUpdate();
-            PreparedStatement ps2 = conn.prepareStatement("create table flight(" +
-                    "flight_id int primary key auto_increment, " +
-                    "departure_city varchar(255), " +
-                    "arrival_city varchar(255));");
-            ps2.executeUpdate();
-            PreparedStatement ps3 = conn.prepareStatement("insert into flight " +
-                    "(departure_city, arrival_city) values " +
-                    "('tampa', 'dallas')," +
-                    "('tampa', 'reston')," +
-                    "('reston', 'morgantown')," +
-                    "('morgantown', 'dallas')," +
-                    "('tampa', 'dallas')," +
-                    "('dallas', 'tampa');");
-            ps3.executeUpdate();
-        }catch(SQLException e){
+            for(int shard = 0; shard < shards; shard++){
+                Connection conn = ConnectionUtil.getConnection(shard);
+                PreparedStatement ps1 = conn.prepareStatement("drop table if exists flight");
+                ps1.executeUpdate();
+                PreparedStatement ps2 = conn.prepareStatement("create table flight(" +
+                        "flight_id int generated by default as identity" +
+                        "(start with " + (shard + 1) + " increment by " + shards + ") primary key, " +
+                        "departure_city varchar(255), " +
+                        "arrival_city varchar(255), " +
+                        "departure_time timestamp(0) with time zone, " +
+                        "arrival_time timestamp(0) with time zone, " +
+                        "departure_key varchar(255) generated always as (lower(trim(departure_city))), " +
+                        "arrival_key varchar(255) generated always as (lower(trim(arrival_city))), " +
+                        "retired boolean default false not null, " +
+                        "created_at timestamp default current_timestamp not null);");
+                ps2.executeUpdate();
+                PreparedStatement ps4 = conn.prepareStatement("create index flight_route_key_idx " +
+                        "on flight(departure_key, arrival_key);");
+                ps4.executeUpdate();
+                PreparedStatement ps5 = conn.prepareStatement("create index flight_archive_idx " +
+                        "on flight(retired, created_at);");
+                ps5.executeUpdate();
+                PreparedStatement ps6 = conn.prepareStatement("create index flight_departure_time_idx " +
+                        "on flight(departure_key, departure_time);");
+                ps6.executeUpdate();
+            }
+            ArchiveSegmentStore.defaultStore().clear();
+            for(String[] flight : flights){
+                Connection conn = ConnectionUtil.getConnection(ConnectionUtil.shardForCity(flight[0]));
+                PreparedStatement ps3 = conn.prepareStatement("insert into flight " +
+                        "(departure_city, arrival_city) values (?, ?);");
+                ps3.setString(1, flight[0]);
+                ps3.setString(2, flight[1]);
+                ps3.executeUpdate();
+            }
+        }catch(SQLException | IOException e){
             e.printStackTrace();
         }
     }
@@ -1,15 +1,35 @@
 package Application.Controller;
 
 import Application.Model.Flight;
+import Application.Model.FlightBulkPatch;
+import Application.Model.FlightChange;
+import Application.Model.FlightPatch;
+import Application.Model.FlightPatchResult;
+import Application.Service.ArchiveService;
+import Application.Service.FlightChangeFeed;
 import Application.Service.FlightService;
+import Application.Service.SnapshotService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.sse.SseClient;
+import io.javalin.json.JavalinJackson;
+import org.eclipse.jetty.server.Request;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
 
 /**
- * There is no need to modify anything in this class. This class will create a Javalin API with four endpoints when the
- * startAPI method is called.
+ * This class will create a Javalin API with the endpoints described below when the startAPI method is called.
  *
  *  You can interact with the Javalin controller by
  *
@@ -21,20 +41,30 @@ import io.javalin.http.Context;
  *     for any type of request. Be sure to set the request type to the intended one (GET/POST/PUT/DELETE), and to
  *     properly format the body (setting the body content type to raw JSON).
  *
- *  The four included endpoints:
+ *  The included endpoints:
  *
- *  GET localhost:8080/flights : retrieve all flights
+ *  GET localhost:8080/flights : retrieve all flights. Add ?includeArchived=true to also retrieve retired and
+ *      archived flights (see ArchiveService), which is slower since the archive is read from disk.
  *
  *  GET localhost:8080/flights/departing/{departure_city}/arriving/{arrival_city} : retrieve all flights departing
  *      from some city and arriving at some other city. For instance, writing Tampa as the departure city and Dallas
  *      as the arrival city will retrieve flights from Tampa to Dallas. This URL would be written as
- *      localhost/8080/flights/departing/tampa/arriving/dallas.
+ *      localhost/8080/flights/departing/tampa/arriving/dallas. City names are matched ignoring case. Also accepts
+ *      ?includeArchived=true.
+ *
+ *  GET localhost:8080/flights/departing/{departure_city}?from=2026-10-19T14:00:00Z&to=2026-10-19T16:00:00Z :
+ *      retrieve the flights leaving a city within a time window, in departure order. from defaults to now and to
+ *      defaults to 24 hours after from. Times are ISO-8601 with an offset (Z, or %2B02:00 since a + in a URL is
+ *      read as a space). Returns a 400 status if a time cannot be parsed or to is not after from.
  *
  *  POST localhost:8080/flights : post a new flight. a new flight should be contained in the body of the request as a
- *      JSON representation, but without a flight_id (this should be generated automatically by the backend). example:
+ *      JSON representation, but without a flight_id (this should be generated automatically by the backend). The
+ *      departure_time and arrival_time are optional. example:
  *          {
  *              "departure_city":"Reston",
- *              "arrival_city":"Tampa"
+ *              "arrival_city":"Tampa",
+ *              "departure_time":"2026-10-19T14:30:00Z",
+ *              "arrival_time":"2026-10-19T17:05:00Z"
  *          }
  *
  *  PUT localhost:8080/flights/{flight_id} : Replace the data identified by flight_id with a new representation which
@@ -47,11 +77,80 @@ import io.javalin.http.Context;
  *      Will replace the values for departure_city and arrival_city for the resource identified by
  *      flight_id 1234.
  *
+ *  PATCH localhost:8080/flights/{flight_id} : change only the fields contained in the request body, keeping the
+ *      others. eg {"arrival_city":"Dallas"}. Returns the updated flight, or a 400 status if no flight has the ID or
+ *      a city is set to a blank value.
+ *
+ *  POST localhost:8080/flights/{flight_id}/retire : retire a flight. It disappears from every other endpoint
+ *      (unless includeArchived=true is used) and is moved to the archive by the next background compaction.
+ *      Returns the retired flight, or a 400 status if no live flight has the ID.
+ *
+ *  PATCH localhost:8080/flights : change many flights at once (see FlightBulkPatch), either with a list of changes
+ *          {"changes":[{"flight_id":1,"arrival_city":"Reston"},{"flight_id":4,"departure_city":"Tampa"}]}
+ *      or with a predicate and the fields to set on every matching flight
+ *          {"where":{"departure_city":"Tampa","arrival_city":"Dallas"},"set":{"arrival_city":"Reston"}}
+ *      The changes are executed as batches, in one transaction per shard. Returns the outcome for every flight,
+ *      eg [{"flight_id":1,"status":"updated","flight":{...}},{"flight_id":99,"status":"not_found","flight":null}]
+ *
+ *  GET localhost:8080/flights/changes : a Server-Sent Events stream of every flight inserted or updated through the
+ *      API. Each event is named after the change type (insert/update), its id is the id of the feed followed by the
+ *      change's sequence number (eg 3kq9x2b7-42) and its data is the change as JSON. Reconnecting clients send the
+ *      Last-Event-ID header to resume after the last change they received. If the changes after that id are no
+ *      longer held by the server, a "reset" event with the range of missed sequence numbers is sent, and if the id
+ *      is not one of this server's (eg it is from before a restart, when sequence numbers started over), a "reset"
+ *      event with a null range is sent. A "reset" event with a null range is also sent to every client when the
+ *      flights are replaced by PUT /snapshot. Either way the client should reload GET /flights. Clients that fall
+ *      too far behind or stop reading are disconnected, and can reconnect to resume. eg
+ *      curl -N -H "Accept: text/event-stream" localhost:8080/flights/changes
+ *
+ *  GET localhost:8080/cities?prefix=ta&limit=10 : autocomplete city names. Returns up to limit (default 10) distinct
+ *      city names starting with prefix, ignoring case, in alphabetical order. eg ["tampa"]
+ *
+ *  GET localhost:8080/stats/departures/{city} : the number of flights departing from a city, eg
+ *      {"city":"tampa","departures":3}
+ *
+ *  GET localhost:8080/stats/arrivals/{city} : the number of flights arriving at a city, eg
+ *      {"city":"dallas","arrivals":3}
+ *
+ *  GET localhost:8080/stats/routes/{departure_city}/{arrival_city} : the number of flights on a route, eg
+ *      {"departure_city":"tampa","arrival_city":"dallas","count":2}
+ *
+ *  GET localhost:8080/stats/top-routes?k=10 : the k routes with the most flights, busiest first (k defaults to 10).
+ *
+ *  GET localhost:8080/stats/top-departures?k=10 : the k cities with the most departures, busiest first, as a JSON
+ *      object of city to number of departures.
+ *
+ *  GET localhost:8080/snapshot : download a compact binary snapshot of every flight (see FlightSnapshot). eg
+ *      curl localhost:8080/snapshot -o flights.snap
+ *
+ *  PUT localhost:8080/snapshot : replace every live flight with the content of the snapshot in the request body.
+ *      Retired flights that are not archived yet are kept, and subscribers of GET /flights/changes receive a "reset"
+ *      event. eg
+ *      curl -X PUT --data-binary @flights.snap localhost:8080/snapshot
+ *
+ *  GET localhost:8080/ready : the readiness check for the load balancer. Once the server has started, every route
+ *      is warmed up with requests that change nothing (see FlightWarmUp); until that is done this returns a 503
+ *      status and {"ready":false}, and afterwards {"ready":true}. The other routes answer during warm-up as usual.
+ *      The number of warm-up passes is flights.warmup.iterations (default 200; 0 skips warm-up) and warm-up stops
+ *      after flights.warmup.seconds seconds (default 60) even if passes are left.
+ *
  */
 public class FlightController {
+    /**
+     * Reads and writes the java.time fields of flights as ISO-8601 strings. It is shared by the handlers below and by
+     * ctx.json, since an ObjectMapper is thread-safe once configured and costly to build.
+     */
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
     FlightService flightService;
+    SnapshotService snapshotService;
+    ArchiveService archiveService;
+    private volatile boolean ready;
     public FlightController(){
         flightService = new FlightService();
+        snapshotService = new SnapshotService();
+        archiveService = new ArchiveService(flightService);
     }
     /**
      * Method defines the structure of the Javalin Flights API. Javalin methods will use handler methods
@@ -59,14 +158,61 @@ public class FlightController {
      * HTTP requests and can generate responses. There is no need to change anything in this method. 
      */
     public Javalin startAPI(){
-        Javalin app = Javalin.create();
+        Javalin app = Javalin.create(config -> config.jsonMapper(new JavalinJackson(JSON_MAPPER)));
         app.post("/flights", this::postFlightHandler);
         app.put("/flights/{flight_id}", this::updateFlightHandler);
+        app.patch("/flights/{flight_id}", this::patchFlightHandler);
+        app.patch("/flights", this::patchFlightsHandler);
+        app.post("/flights/{flight_id}/retire", this::retireFlightHandler);
         app.get("/flights", this::getAllFlightsHandler);
         app.get("/flights/departing/{departure_city}/arriving/{arrival_city}",
                 this::getAllFlightsDepartingFromCityArrivingToCityHandler);
+        app.get("/flights/departing/{departure_city}", this::getFlightsDepartingBetweenHandler);
+        app.sse("/flights/changes", this::flightChangesHandler);
+        app.get("/cities", this::getCitiesHandler);
+        app.get("/stats/departures/{city}", this::getDepartureCountHandler);
+        app.get("/stats/arrivals/{city}", this::getArrivalCountHandler);
+        app.get("/stats/routes/{departure_city}/{arrival_city}", this::getRouteCountHandler);
+        app.get("/stats/top-routes", this::getTopRoutesHandler);
+        app.get("/stats/top-departures", this::getTopDeparturesHandler);
+        app.get("/snapshot", this::getSnapshotHandler);
+        app.put("/snapshot", this::putSnapshotHandler);
+        app.get("/ready", this::readyHandler);
+        app.events(event -> event.serverStarted(() -> startWarmUp(app.port())));
+        archiveService.start();
         return app;
     }
+
+    /**
+     * @return true once the API has been warmed up and should receive traffic.
+     */
+    public boolean isReady(){
+        return ready;
+    }
+
+    /**
+     * Warm up every route in the background, then report the API as ready.
+     * @param port the port the server listens on.
+     */
+    private void startWarmUp(int port){
+        int iterations = Integer.getInteger("flights.warmup.iterations", 200);
+        Duration budget = Duration.ofSeconds(Long.getLong("flights.warmup.seconds", 60));
+        Thread thread = new Thread(() -> {
+            try {
+                if(iterations > 0){
+                    List<String> cities = flightService.getCityIndex().findByPrefix("", 2);
+                    String departure_city = cities.isEmpty() ? "tampa" : cities.get(0);
+                    String arrival_city = cities.size() < 2 ? "dallas" : cities.get(1);
+                    new FlightWarmUp(port, iterations, budget).run(departure_city, arrival_city);
+                }
+            } finally {
+                ready = true;
+            }
+        }, "flight-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Handler to post a new flight.
      * The Jackson ObjectMapper will automatically convert the JSON of the POST request into a Flight object.
@@ -77,13 +223,12 @@ public class FlightController {
      * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
      */
     private void postFlightHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Flight flight = mapper.readValue(ctx.body(), Flight.class);
+        Flight flight = JSON_MAPPER.readValue(ctx.body(), Flight.class);
         Flight addedFlight = flightService.addFlight(flight);
         if(addedFlight==null){
             ctx.status(400);
         }else{
-            ctx.json(mapper.writeValueAsString(addedFlight));
+            ctx.json(JSON_MAPPER.writeValueAsString(addedFlight));
         }
     }
 
@@ -100,35 +245,322 @@ public class FlightController {
      * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
      */
     private void updateFlightHandler(Context ctx) throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        Flight flight = mapper.readValue(ctx.body(), Flight.class);
+        Flight flight = JSON_MAPPER.readValue(ctx.body(), Flight.class);
         int flight_id = Integer.parseInt(ctx.pathParam("flight_id"));
         Flight updatedFlight = flightService.updateFlight(flight_id, flight);
         System.out.println(updatedFlight);
         if(updatedFlight == null){
             ctx.status(400);
         }else{
-            ctx.json(mapper.writeValueAsString(updatedFlight));
+            ctx.json(JSON_MAPPER.writeValueAsString(updatedFlight));
         }
 
     }
 
     /**
-     * Handler to retrieve all flights. There is no need to change anything in this method.
+     * Handler to change some fields of a flight. If no flight has the ID, the body is empty (null) or a city is set
+     * to a blank value, the API will return a 400 status (client error), like the PUT handler.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     */
+    private void patchFlightHandler(Context ctx) throws JsonProcessingException {
+        FlightPatch patch = JSON_MAPPER.readValue(ctx.body(), FlightPatch.class);
+        if(patch == null){
+            //the body was the JSON literal null
+            ctx.status(400);
+            return;
+        }
+        int flight_id = Integer.parseInt(ctx.pathParam("flight_id"));
+        Flight patchedFlight = flightService.patchFlight(flight_id, patch);
+        if(patchedFlight == null){
+            ctx.status(400);
+        }else{
+            ctx.json(JSON_MAPPER.writeValueAsString(patchedFlight));
+        }
+    }
+
+    /**
+     * Handler to change many flights at once. If the body has neither a list of changes nor both a predicate and
+     * the fields to set, or the predicate names no city, the API will return a 400 status (client error). If a
+     * shard fails during a predicate update, the outcomes end with one "failed" outcome without a flight_id.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws JsonProcessingException will be thrown if there is an issue converting JSON into an object.
+     */
+    private void patchFlightsHandler(Context ctx) throws JsonProcessingException {
+        FlightBulkPatch bulkPatch = JSON_MAPPER.readValue(ctx.body(), FlightBulkPatch.class);
+        List<FlightPatchResult> results = null;
+        //a body of the JSON literal null reads as a null bulkPatch, and is answered with a 400 below
+        if(bulkPatch != null && bulkPatch.getChanges() != null){
+            results = flightService.patchFlights(bulkPatch.getChanges());
+        }else if(bulkPatch != null && bulkPatch.getWhere() != null && bulkPatch.getSet() != null){
+            results = flightService.patchFlightsWhere(bulkPatch.getWhere(), bulkPatch.getSet());
+        }
+        if(results == null){
+            ctx.status(400);
+        }else{
+            ctx.json(JSON_MAPPER.writeValueAsString(results));
+        }
+    }
+
+    /**
+     * Handler to retire a flight. If no live flight has the ID, the API will return a 400 status (client error).
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws JsonProcessingException will be thrown if there is an issue converting the flight into JSON.
+     */
+    private void retireFlightHandler(Context ctx) throws JsonProcessingException {
+        Flight retiredFlight = flightService.retireFlight(Integer.parseInt(ctx.pathParam("flight_id")));
+        if(retiredFlight == null){
+            ctx.status(400);
+        }else{
+            ctx.json(JSON_MAPPER.writeValueAsString(retiredFlight));
+        }
+    }
+
+    /**
+     * Handler to retrieve all flights.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
+     * If the flights cannot all be read (eg a shard is down), the API will return a 500 status (server error)
+     * rather than part of them.
+     * @throws IOException will be thrown if includeArchived=true and the archive cannot be read.
+     */
+    private void getAllFlightsHandler(Context ctx) throws IOException {
+        if(includeArchived(ctx)){
+            ctx.json(archiveService.getAllFlightsIncludingArchived());
+        }else{
+            List<Flight> flights = flightService.getAllFlights();
+            if(flights == null){
+                ctx.status(500);
+            }else{
+                ctx.json(flights);
+            }
+        }
+    }
+
+    /**
+     * @return true if the request asks for retired and archived flights too.
      */
-    private void getAllFlightsHandler(Context ctx){
-        ctx.json(flightService.getAllFlights());
+    private static boolean includeArchived(Context ctx){
+        return "true".equalsIgnoreCase(ctx.queryParam("includeArchived"));
     }
     /**
      * Handler to retrieve all flights departing from a particular city and arriving at another city.
-     * both cities are retrieved from the path. There is no need to change anything in this method.
+     * both cities are retrieved from the path.
      * @param ctx the context object handles information HTTP requests and generates responses within Javalin. It will
      *            be available to this method automatically thanks to the app.put method.
+     * @throws IOException will be thrown if includeArchived=true and the archive cannot be read.
+     */
+    private void getAllFlightsDepartingFromCityArrivingToCityHandler(Context ctx) throws IOException {
+        if(includeArchived(ctx)){
+            ctx.json(archiveService.getAllFlightsFromCityToCityIncludingArchived(ctx.pathParam("departure_city"),
+                    ctx.pathParam("arrival_city")));
+        }else{
+            ctx.json(flightService.getAllFlightsFromCityToCity(ctx.pathParam("departure_city"),
+                    ctx.pathParam("arrival_city")));
+        }
+    }
+
+    /**
+     * Handler to retrieve the flights leaving a city within a time window.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
      */
-    private void getAllFlightsDepartingFromCityArrivingToCityHandler(Context ctx) {
-        ctx.json(flightService.getAllFlightsFromCityToCity(ctx.pathParam("departure_city"),
+    private void getFlightsDepartingBetweenHandler(Context ctx) {
+        try {
+            String fromParam = ctx.queryParam("from");
+            String toParam = ctx.queryParam("to");
+            Instant from = fromParam == null ? Instant.now() : OffsetDateTime.parse(fromParam).toInstant();
+            Instant to = toParam == null ? from.plus(Duration.ofHours(24)) : OffsetDateTime.parse(toParam).toInstant();
+            List<Flight> flights = flightService.getFlightsDepartingBetween(ctx.pathParam("departure_city"), from, to);
+            if(flights == null){
+                ctx.status(400);
+            }else{
+                ctx.json(flights);
+            }
+        } catch (DateTimeException | ArithmeticException e) {
+            //unparseable times, and times too far out to add the default window to or to store
+            ctx.status(400).result(e.getMessage());
+        }
+    }
+
+    /**
+     * Handler for the change feed. The client is subscribed to the service's FlightChangeFeed and the connection is
+     * kept open until either side closes it.
+     * @param client the Server-Sent Events client, wrapping the context of the request.
+     */
+    private void flightChangesHandler(SseClient client) {
+        FlightChangeFeed changeFeed = flightService.getChangeFeed();
+        FlightChangeFeed.Subscription subscription = changeFeed.subscribe(client.ctx.header("Last-Event-ID"),
+                new SseSink(client, changeFeed));
+        client.onClose(() -> changeFeed.unsubscribe(subscription));
+        client.keepAlive();
+    }
+
+    /**
+     * Writes feed changes to a Server-Sent Events client.
+     */
+    private static class SseSink implements FlightChangeFeed.Sink {
+        private final SseClient client;
+        private final FlightChangeFeed changeFeed;
+
+        SseSink(SseClient client, FlightChangeFeed changeFeed) {
+            this.client = client;
+            this.changeFeed = changeFeed;
+        }
+
+        @Override
+        public void send(FlightChange change) throws JsonProcessingException {
+            client.sendEvent(change.getType(), JSON_MAPPER.writeValueAsString(change),
+                    changeFeed.eventId(change.getSequence()));
+        }
+
+        @Override
+        public void gap(long firstMissed, long lastMissed) {
+            client.sendEvent("reset", "{\"first_missed\":" + firstMissed + ",\"last_missed\":" + lastMissed + "}",
+                    changeFeed.eventId(lastMissed));
+        }
+
+        @Override
+        public void reset(long resumeAfter) {
+            client.sendEvent("reset", "{\"first_missed\":null,\"last_missed\":null}",
+                    changeFeed.eventId(resumeAfter));
+        }
+
+        @Override
+        public void keepAlive() {
+            client.sendComment("keep-alive");
+        }
+
+        @Override
+        public void close() {
+            client.close();
+            //a write blocked on a client that stopped reading only returns once the connection is closed
+            Request request = Request.getBaseRequest(client.ctx.req());
+            if(request != null){
+                request.getHttpChannel().getEndPoint().close();
+            }
+        }
+    }
+
+    /**
+     * Handler to autocomplete city names. If limit is not a positive number, the API will return a 400 status.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getCitiesHandler(Context ctx) {
+        Integer limit = positiveQueryParam(ctx, "limit");
+        if(limit != null){
+            ctx.json(flightService.getCityIndex().findByPrefix(ctx.queryParam("prefix"), limit));
+        }
+    }
+
+    /**
+     * Handler to retrieve the number of flights departing from a city.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getDepartureCountHandler(Context ctx) {
+        String city = ctx.pathParam("city");
+        ctx.json(Map.of("city", city, "departures", flightService.getRouteStatistics().getDepartureCount(city)));
+    }
+
+    /**
+     * Handler to retrieve the number of flights arriving at a city.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getArrivalCountHandler(Context ctx) {
+        String city = ctx.pathParam("city");
+        ctx.json(Map.of("city", city, "arrivals", flightService.getRouteStatistics().getArrivalCount(city)));
+    }
+
+    /**
+     * Handler to retrieve the number of flights on a route.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getRouteCountHandler(Context ctx) {
+        ctx.json(flightService.getRouteStatistics().getRouteCount(ctx.pathParam("departure_city"),
                 ctx.pathParam("arrival_city")));
     }
+
+    /**
+     * Handler to retrieve the busiest routes. If k is not a positive number, the API will return a 400 status.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getTopRoutesHandler(Context ctx) {
+        Integer k = positiveQueryParam(ctx, "k");
+        if(k != null){
+            ctx.json(flightService.getRouteStatistics().getTopRoutes(k));
+        }
+    }
+
+    /**
+     * Handler to retrieve the cities with the most departures. If k is not a positive number, the API will return a
+     * 400 status.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void getTopDeparturesHandler(Context ctx) {
+        Integer k = positiveQueryParam(ctx, "k");
+        if(k != null){
+            ctx.json(flightService.getRouteStatistics().getTopDepartureCities(k));
+        }
+    }
+
+    /**
+     * @return a positive integer query parameter (10 when absent), or null after setting a 400 status if it is
+     *         invalid.
+     */
+    private Integer positiveQueryParam(Context ctx, String name) {
+        String value = ctx.queryParam(name);
+        try {
+            int parsed = value == null ? 10 : Integer.parseInt(value);
+            if(parsed > 0){
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            //fall through to the 400 below
+        }
+        ctx.status(400);
+        return null;
+    }
+
+    /**
+     * Handler for the readiness check. It returns a 503 status (service unavailable) until warm-up is done.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void readyHandler(Context ctx) {
+        boolean warmedUp = ready;
+        if(!warmedUp){
+            ctx.status(503);
+        }
+        ctx.json(Map.of("ready", warmedUp));
+    }
+
+    /**
+     * Handler to download a snapshot of all flights. The snapshot is streamed straight into the response body.
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     * @throws IOException will be thrown if the response cannot be written.
+     */
+    private void getSnapshotHandler(Context ctx) throws IOException {
+        ctx.contentType("application/octet-stream");
+        ctx.header("Content-Disposition", "attachment; filename=flights.snap");
+        snapshotService.exportSnapshot(Channels.newChannel(ctx.outputStream()));
+    }
+
+    /**
+     * Handler to replace all flights with the content of a snapshot. If the snapshot is corrupt, the API will return
+     * a 400 status (client error) and the existing flights are left in place. The snapshot is read before any lock
+     * is taken, and the flights are then replaced by the FlightService, while no other change runs. If the database
+     * fails while the flights are replaced, the API will return a 500 status (server error).
+     * @param ctx the context object handles information HTTP requests and generates responses within Javalin.
+     */
+    private void putSnapshotHandler(Context ctx) {
+        try {
+            List<Flight> flights = snapshotService.readSnapshot(Channels.newChannel(ctx.bodyInputStream()));
+            int loaded = flightService.replaceAllFlights(snapshotService, flights);
+            if(loaded < 0){
+                ctx.status(500);
+            }else{
+                ctx.json(Map.of("flights", loaded));
+            }
+        } catch (IOException e) {
+            ctx.status(400).result(e.getMessage());
+        }
+    }
 }
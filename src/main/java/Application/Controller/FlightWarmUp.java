@@ -0,0 +1,209 @@
+package Application.Controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FlightWarmUp sends requests to every route of a freshly started API, so that the code behind them (Jetty, Javalin,
+ * Jackson, H2 and our own classes) is loaded and JIT-compiled, and the database caches are filled, before the load
+ * balancer sends real traffic (see GET /ready in FlightController).
+ *
+ * Warm-up never changes a flight. Read routes are called with cities taken from the city index, and write routes
+ * with requests the API rejects before anything is written: a flight with blank cities, flight ID 0 (which no
+ * flight has, since IDs start at 1), a predicate without cities and an empty snapshot. Routes that read everything
+ * from disk or keep the connection open (includeArchived=true, GET /snapshot and the change feed) are called once
+ * rather than on every pass.
+ *
+ * The first and the last latency of every route are logged, so the effect of warming up is visible in the log.
+ */
+public class FlightWarmUp {
+    /**
+     * The number of passes at the end of warm-up whose latencies are averaged into the "last" latency.
+     */
+    private static final int LAST_PASSES = 10;
+
+    /**
+     * One request sent by the warm-up, with its latencies.
+     */
+    private static class Call {
+        final String name;
+        final HttpRequest request;
+        final boolean streaming;
+        long firstNanos = -1;
+        final long[] lastNanos = new long[LAST_PASSES];
+        int samples;
+
+        Call(String name, HttpRequest request, boolean streaming) {
+            this.name = name;
+            this.request = request;
+            this.streaming = streaming;
+        }
+
+        void record(long nanos) {
+            if(firstNanos < 0){
+                firstNanos = nanos;
+            }else{
+                lastNanos[samples++ % LAST_PASSES] = nanos;
+            }
+        }
+
+        long lastAverageNanos() {
+            int count = Math.min(samples, LAST_PASSES);
+            long total = 0;
+            for(int i = 0; i < count; i++){
+                total += lastNanos[i];
+            }
+            return count == 0 ? 0 : total / count;
+        }
+    }
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final int iterations;
+    private final Duration budget;
+
+    /**
+     * @param port the port the API listens on.
+     * @param iterations the number of passes over the routes.
+     * @param budget warm-up stops after the pass that exceeds this time, even if passes are left.
+     */
+    public FlightWarmUp(int port, int iterations, Duration budget) {
+        this.baseUrl = "http://localhost:" + port;
+        this.iterations = iterations;
+        this.budget = budget;
+    }
+
+    /**
+     * Run the warm-up and log its timings.
+     * @param departure_city a city flights depart from, used in the read routes.
+     * @param arrival_city a city flights arrive at, used in the read routes.
+     * @return the number of requests sent.
+     */
+    public int run(String departure_city, String arrival_city) {
+        String departure = encode(departure_city);
+        String arrival = encode(arrival_city);
+        String from = Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+        String blankFlight = "{\"departure_city\":\" \",\"arrival_city\":\"\"," +
+                "\"departure_time\":\"" + from + "\",\"arrival_time\":\"" + from + "\"}";
+        String flight = "{\"departure_city\":\"Tampa\",\"arrival_city\":\"Dallas\"," +
+                "\"departure_time\":\"" + from + "\",\"arrival_time\":\"" + from + "\"}";
+
+        List<Call> calls = new ArrayList<>();
+        calls.add(get("GET /flights", "/flights"));
+        calls.add(get("GET /flights/departing/{departure_city}/arriving/{arrival_city}",
+                "/flights/departing/" + departure + "/arriving/" + arrival));
+        calls.add(get("GET /flights/departing/{departure_city}", "/flights/departing/" + departure + "?from=" + from));
+        String prefix = departure_city.substring(0, Math.min(1, departure_city.length()));
+        calls.add(get("GET /cities", "/cities?prefix=" + encode(prefix)));
+        calls.add(get("GET /stats/departures/{city}", "/stats/departures/" + departure));
+        calls.add(get("GET /stats/arrivals/{city}", "/stats/arrivals/" + arrival));
+        calls.add(get("GET /stats/routes/{departure_city}/{arrival_city}",
+                "/stats/routes/" + departure + "/" + arrival));
+        calls.add(get("GET /stats/top-routes", "/stats/top-routes"));
+        calls.add(get("GET /stats/top-departures", "/stats/top-departures"));
+        calls.add(send("POST /flights", "POST", "/flights", blankFlight));
+        calls.add(send("PUT /flights/{flight_id}", "PUT", "/flights/0", flight));
+        calls.add(send("PATCH /flights/{flight_id}", "PATCH", "/flights/0", flight));
+        calls.add(send("PATCH /flights (changes)", "PATCH", "/flights",
+                "{\"changes\":[{\"flight_id\":0,\"arrival_city\":\"Dallas\"}]}"));
+        calls.add(send("PATCH /flights (where)", "PATCH", "/flights",
+                "{\"where\":{},\"set\":{\"arrival_city\":\"Dallas\"}}"));
+        calls.add(send("POST /flights/{flight_id}/retire", "POST", "/flights/0/retire", ""));
+        calls.add(send("PUT /snapshot", "PUT", "/snapshot", ""));
+
+        List<Call> once = new ArrayList<>();
+        once.add(get("GET /flights?includeArchived=true", "/flights?includeArchived=true"));
+        once.add(get("GET /flights/departing/{departure_city}/arriving/{arrival_city}?includeArchived=true",
+                "/flights/departing/" + departure + "/arriving/" + arrival + "?includeArchived=true"));
+        once.add(get("GET /snapshot", "/snapshot"));
+        //the change feed never ends on its own, so it is closed as soon as the response starts
+        once.add(new Call("GET /flights/changes", HttpRequest.newBuilder(URI.create(baseUrl + "/flights/changes"))
+                .timeout(Duration.ofSeconds(5)).header("Accept", "text/event-stream").GET().build(), true));
+
+        long started = System.nanoTime();
+        long deadline = started + budget.toNanos();
+        int sent = 0;
+        long firstPassNanos = 0;
+        long lastPassNanos = 0;
+        int passes = 0;
+        while(passes < iterations && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()){
+            long passStarted = System.nanoTime();
+            for(Call call : calls){
+                sent += send(call) ? 1 : 0;
+            }
+            lastPassNanos = System.nanoTime() - passStarted;
+            if(passes++ == 0){
+                firstPassNanos = lastPassNanos;
+            }
+        }
+        for(Call call : once){
+            sent += send(call) ? 1 : 0;
+        }
+
+        System.out.println(String.format("warm-up: %d requests, %d passes over %d routes in %d ms", sent, passes,
+                calls.size(), Duration.ofNanos(System.nanoTime() - started).toMillis()));
+        System.out.println(String.format("warm-up: a pass over every route took %.1f ms at first and %.1f ms at last",
+                firstPassNanos / 1e6, lastPassNanos / 1e6));
+        for(Call call : calls){
+            System.out.println(String.format("warm-up: %s %.2f ms first, %.2f ms over the last passes", call.name,
+                    call.firstNanos / 1e6, call.lastAverageNanos() / 1e6));
+        }
+        for(Call call : once){
+            System.out.println(String.format("warm-up: %s %.2f ms", call.name, call.firstNanos / 1e6));
+        }
+        return sent;
+    }
+
+    private Call get(String name, String path) {
+        return new Call(name, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(), false);
+    }
+
+    private Call send(String name, String method, String path, String body) {
+        return new Call(name, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .method(method, HttpRequest.BodyPublishers.ofString(body)).build(), false);
+    }
+
+    /**
+     * Send a request, reading the whole response, and record its latency. Server errors are logged, since the
+     * route they come from would fail real requests too.
+     * @return true if a response was received.
+     */
+    private boolean send(Call call) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(call.request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream body = response.body()) {
+                if(!call.streaming){
+                    body.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            call.record(System.nanoTime() - started);
+            if(response.statusCode() >= 500){
+                System.out.println("warm-up: " + call.name + " returned " + response.statusCode());
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("warm-up: " + call.name + " failed: " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,124 @@
+package Application.DAO;
+
+import Application.Model.Flight;
+import Application.Util.ConnectionUtil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The FlightArchiveDAO holds the SQL used to move flights out of the flight table (see ArchiveService). A flight is
+ * archived in two steps: it is first retired, which hides it from every FlightDAO query, and the compaction job
+ * later copies the retired rows to an archive segment and deletes them.
+ *
+ * Retiring uses H2's data change delta tables: SELECT ... FROM OLD TABLE (UPDATE ...) updates the rows and returns
+ * them as they were in one statement, so the caller learns exactly which flights it retired even when other
+ * requests retire or update flights at the same time.
+ */
+public class FlightArchiveDAO {
+
+    /**
+     * Retire a live flight.
+     * @param id a flight ID.
+     * @return the flight as it was before it was retired, or null if no live flight has the ID.
+     */
+    public Flight retireFlight(int id){
+        int owner = ConnectionUtil.shardForFlightId(id);
+        Flight flight = retireFlight(owner, id);
+        //a flight whose departure city was changed may have moved to another shard
+        for(int shard = 0; flight == null && shard < ConnectionUtil.getShardCount(); shard++){
+            if(shard != owner){
+                flight = retireFlight(shard, id);
+            }
+        }
+        return flight;
+    }
+
+    private Flight retireFlight(int shard, int id){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM OLD TABLE " +
+                    "(UPDATE flight SET retired = TRUE WHERE flight_id = ? AND retired = FALSE)";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setInt(1, id);
+            List<Flight> retired = FlightRowMapper.mapAll(preparedStatement.executeQuery());
+            return retired.isEmpty() ? null : retired.get(0);
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Retire every live flight created before a cutoff.
+     * @param cutoff flights with an earlier created_at are retired.
+     * @return the flights retired, as they were before, or null if a shard failed.
+     */
+    public List<Flight> retireFlightsCreatedBefore(Timestamp cutoff){
+        List<Flight> retired = new ArrayList<>();
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            Connection connection = ConnectionUtil.getConnection(shard);
+            try {
+                String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM OLD TABLE " +
+                        "(UPDATE flight SET retired = TRUE WHERE retired = FALSE AND created_at < ?)";
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                preparedStatement.setTimestamp(1, cutoff);
+                retired.addAll(FlightRowMapper.mapAll(preparedStatement.executeQuery()));
+            }catch(SQLException e){
+                System.out.println(e.getMessage());
+                return null;
+            }
+        }
+        return retired;
+    }
+
+    /**
+     * Retrieve the flights of one shard that are retired but not archived yet.
+     * @param shard the shard number.
+     * @return the retired flights in flight_id order, or null if the query failed.
+     */
+    public List<Flight> getRetiredFlights(int shard){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight WHERE retired = TRUE ORDER BY flight_id";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            return FlightRowMapper.mapAll(preparedStatement.executeQuery());
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Delete archived flights from one shard, as a JDBC batch in one transaction. Only retired rows are deleted.
+     * @param shard the shard number.
+     * @param ids the IDs of flights that were written to an archive segment.
+     * @return true if the rows were deleted.
+     */
+    public boolean deleteRetiredFlights(int shard, List<Integer> ids){
+        try (Connection connection = ConnectionUtil.openConnection(shard)) {
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "DELETE FROM flight WHERE flight_id = ? AND retired = TRUE");
+                for(int id : ids){
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                System.out.println(e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+}
@@ -1,11 +1,26 @@
 package Application.DAO;
 
 import Application.Model.Flight;
+import Application.Model.FlightPatch;
+import Application.Util.CityIndex;
 import Application.Util.ConnectionUtil;
 
 import java.sql.*;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * A DAO is a class that mediates the transformation of data between the format of objects in Java to rows in a
@@ -15,34 +30,126 @@ import java.util.List;
  * It contains similar values as the Flight class:
  * flight_id, which is of type int,
  * departure_city, which is of type varchar(255),
- * arrival_city, which is of type varchar(255).
+ * arrival_city, which is of type varchar(255),
+ * departure_key and arrival_key, the normalized (trimmed, lower-cased) city names, generated by the database,
+ * retired and created_at, used to archive flights (see FlightArchiveDAO).
+ *
+ * Retired flights are no longer live, so every query here only reads and changes rows with retired = FALSE.
+ *
+ * When flights are sharded (see ConnectionUtil), every method goes to the shard(s) that can hold its rows: inserts
+ * and route lookups go to the shard of the departure city, lookups by ID go to the shard that generated the ID, and
+ * getAllFlights queries every shard in parallel and merges the results.
  */
 public class FlightDAO {
-
-
+    private static final ExecutorService SCATTER_POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "flight-scatter-gather");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int PATCH_BATCH_SIZE = 500;
+    //a moved flight keeps its created_at, so that moving it does not restart its retention period
+    private static final String INSERT_WITH_ID = "INSERT INTO flight " +
+            "(flight_id, departure_city, arrival_city, departure_time, arrival_time, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    //a patch only overwrites the fields it sets: COALESCE keeps the current value of the others
+    private static final String PATCH_ASSIGNMENTS = "departure_city = COALESCE(?, departure_city), " +
+            "arrival_city = COALESCE(?, arrival_city), departure_time = COALESCE(?, departure_time), " +
+            "arrival_time = COALESCE(?, arrival_time)";
 
     /**
      * TODO: Retrieve all flights from the flight table.
      *
      * You only need to change the sql String and set preparedStatement parameters.
      *
-     * @return all flights.
+     * @return all flights, in flight_id order, or null if a shard could not be read. A partial list is never
+     *         returned, since callers could not tell it from the whole table.
      */
     public List<Flight> getAllFlights(){
-        Connection connection = ConnectionUtil.getConnection();
-        List<Flight> flights = new ArrayList<>();
+        int shards = ConnectionUtil.getShardCount();
+        if(shards == 1){
+            return getAllFlights(0);
+        }
+        //scatter the query over every shard, then gather the sorted results into a single sorted list
+        List<Future<List<Flight>>> futures = new ArrayList<>();
+        for(int shard = 0; shard < shards; shard++){
+            int queriedShard = shard;
+            futures.add(SCATTER_POOL.submit(() -> getAllFlights(queriedShard)));
+        }
+        List<List<Flight>> results = new ArrayList<>();
+        try {
+            for(Future<List<Flight>> future : futures){
+                List<Flight> shardFlights = future.get();
+                if(shardFlights == null){
+                    return null;
+                }
+                results.add(shardFlights);
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return null;
+        }catch(ExecutionException e){
+            System.out.println(e.getCause().getMessage());
+            return null;
+        }
+        return mergeByFlightId(results);
+    }
+
+    /**
+     * Merge lists of flights that are each sorted by flight_id into one sorted list. A flight whose move to another
+     * shard failed halfway can be stored in two shards (see patchFlights); it is listed once, with the copy that
+     * getFlightById returns (the one of the shard that generated the ID, else the one of the lowest shard), so that
+     * every read agrees.
+     * @param sortedLists the flights of every shard, indexed by shard.
+     */
+    private static List<Flight> mergeByFlightId(List<List<Flight>> sortedLists){
+        int total = 0;
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingInt(
+                (int[] head) -> sortedLists.get(head[0]).get(head[1]).getFlight_id()));
+        for(int i = 0; i < sortedLists.size(); i++){
+            total += sortedLists.get(i).size();
+            if(!sortedLists.get(i).isEmpty()){
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<Flight> merged = new ArrayList<>(total);
+        int lastShard = -1;
+        while(!heads.isEmpty()){
+            int[] head = heads.poll();
+            List<Flight> list = sortedLists.get(head[0]);
+            Flight flight = list.get(head[1]);
+            int last = merged.size() - 1;
+            if(last < 0 || merged.get(last).getFlight_id() != flight.getFlight_id()){
+                merged.add(flight);
+                lastShard = head[0];
+            }else if(head[0] == ConnectionUtil.shardForFlightId(flight.getFlight_id())
+                    || lastShard != ConnectionUtil.shardForFlightId(flight.getFlight_id()) && head[0] < lastShard){
+                merged.set(last, flight);
+                lastShard = head[0];
+            }
+            if(++head[1] < list.size()){
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Retrieve all flights stored in one shard.
+     * @param shard the shard number.
+     * @return the shard's flights, in flight_id order, or null if the query failed.
+     */
+    private List<Flight> getAllFlights(int shard){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        List<Flight> flights = null;
         try {
             //Write SQL logic here
-            String sql = "SELECT * FROM flight";
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight WHERE retired = FALSE " +
+                    "ORDER BY flight_id";
 
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
             ResultSet rs = preparedStatement.executeQuery();
             
-            while(rs.next()){
-                Flight flight = new Flight(rs.getInt("flight_id"), rs.getString("departure_city"),
-                        rs.getString("arrival_city"));
-                flights.add(flight);
-            }
+            flights = FlightRowMapper.mapAll(rs);
         }catch(SQLException e){
             System.out.println(e.getMessage());
         }
@@ -64,10 +171,29 @@ public class FlightDAO {
      * @param id a flight ID.
      */
     public Flight getFlightById(int id){
-        Connection connection = ConnectionUtil.getConnection();
+        int owner = ConnectionUtil.shardForFlightId(id);
+        Flight flight = getFlightById(owner, id);
+        //a flight whose departure city was changed may have moved to another shard
+        for(int shard = 0; flight == null && shard < ConnectionUtil.getShardCount(); shard++){
+            if(shard != owner){
+                flight = getFlightById(shard, id);
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * Retrieve a specific flight from one shard.
+     * @param shard the shard number.
+     * @param id a flight ID.
+     * @return the flight, or null if the shard does not store it.
+     */
+    private Flight getFlightById(int shard, int id){
+        Connection connection = ConnectionUtil.getConnection(shard);
         try {
             //Write SQL logic here
-            String sql = "SELECT * FROM flight WHERE flight_id = ?";
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight WHERE flight_id = ? " +
+                    "AND retired = FALSE";
             
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
@@ -75,10 +201,8 @@ public class FlightDAO {
             preparedStatement.setInt(1, id);
 
             ResultSet rs = preparedStatement.executeQuery();
-            while(rs.next()){
-                Flight flight = new Flight(rs.getInt("flight_id"), rs.getString("departure_city"),
-                        rs.getString("arrival_city"));
-                return flight;
+            if(rs.next()){
+                return FlightRowMapper.forResultSet(rs).mapRow(rs);
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
@@ -106,24 +230,27 @@ public class FlightDAO {
      * @param flight an object modelling a Flight. the flight object does not contain a flight ID.
      */
     public Flight insertFlight(Flight flight){
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(ConnectionUtil.shardForCity(flight.getDeparture_city()));
         try {
             //Write SQL logic here. When inserting, you only need to define the departure_city and arrival_city
             //values (two columns total!)
-            String sql = "INSERT INTO flight (departure_city, arrival_city) VALUES (?, ?)";
+            String sql = "INSERT INTO flight (departure_city, arrival_city, departure_time, arrival_time) " +
+                    "VALUES (?, ?, ?, ?)";
             PreparedStatement preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             //write preparedStatement's setString and setInt methods here.
 
             preparedStatement.setString(1, flight.getDeparture_city());
             preparedStatement.setString(2, flight.getArrival_city());
+            preparedStatement.setObject(3, FlightRowMapper.toTimestamp(flight.getDeparture_time()));
+            preparedStatement.setObject(4, FlightRowMapper.toTimestamp(flight.getArrival_time()));
 
 
             preparedStatement.executeUpdate();
             ResultSet pkeyResultSet = preparedStatement.getGeneratedKeys();
             if(pkeyResultSet.next()){
                 int generated_flight_id = (int) pkeyResultSet.getLong(1);
-                return new Flight(generated_flight_id, flight.getDeparture_city(), flight.getArrival_city());
+                return flight.withFlight_id(generated_flight_id);
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
@@ -145,21 +272,37 @@ public class FlightDAO {
      * preparedStatement.setString(2,string2);
      * preparedStatement.setInt(3,int1);
      *
+     * A flight whose departure city moves to another shard is moved like in patchFlights.
+     *
      * @param id a flight ID.
      * @param flight a flight object. the flight object does not contain a flight ID.
      */
     public void updateFlight(int id, Flight flight){
-        Connection connection = ConnectionUtil.getConnection();
+        int shard = findShardOf(id);
+        if(shard < 0){
+            return;
+        }
+        int target = ConnectionUtil.shardForCity(flight.getDeparture_city());
+        if(target != shard){
+            List<List<Flight>> moves = perShard();
+            moves.get(target).add(flight.withFlight_id(id));
+            writeFlights(perShard(), moves, Map.of(id, shard));
+            return;
+        }
+        Connection connection = ConnectionUtil.getConnection(shard);
         try {
             //Write SQL logic here
-            String sql = "UPDATE flight SET departure_city = ?, arrival_city = ? WHERE flight_id = ?";
+            String sql = "UPDATE flight SET departure_city = ?, arrival_city = ?, departure_time = ?, " +
+                    "arrival_time = ? WHERE flight_id = ? AND retired = FALSE";
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             //write PreparedStatement setString and setInt methods here.
 
             preparedStatement.setString(1, flight.getDeparture_city());
             preparedStatement.setString(2, flight.getArrival_city());
-            preparedStatement.setInt(3, id);
+            preparedStatement.setObject(3, FlightRowMapper.toTimestamp(flight.getDeparture_time()));
+            preparedStatement.setObject(4, FlightRowMapper.toTimestamp(flight.getArrival_time()));
+            preparedStatement.setInt(5, id);
 
             preparedStatement.executeUpdate();
         }catch(SQLException e){
@@ -167,6 +310,23 @@ public class FlightDAO {
         }
     }
 
+    /**
+     * @param id a flight ID.
+     * @return the shard that stores the flight, or -1 if no shard does.
+     */
+    private int findShardOf(int id){
+        int owner = ConnectionUtil.shardForFlightId(id);
+        if(getFlightById(owner, id) != null){
+            return owner;
+        }
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            if(shard != owner && getFlightById(shard, id) != null){
+                return shard;
+            }
+        }
+        return -1;
+    }
+
     /**
      * TODO: Retrieve all flights following a particular flight path.
      *
@@ -180,32 +340,438 @@ public class FlightDAO {
      * preparedStatement.setString(1,"column 1 value");
      * preparedStatement.setString(2,"column 2 value");
      *
+     * Cities are matched ignoring case and surrounding whitespace. The parameters are normalized here and compared
+     * with the generated departure_key and arrival_key columns, which are indexed, rather than wrapping the city
+     * columns in LOWER() which would force a full table scan.
+     *
      * @param departure_city the departing city.
      * @param arrival_city the arriving city.
      * @return all flights from departure_city to arrival_city.
      */
     public List<Flight> getAllFlightsFromCityToCity(String departure_city, String arrival_city){
-        Connection connection = ConnectionUtil.getConnection();
+        Connection connection = ConnectionUtil.getConnection(ConnectionUtil.shardForCity(departure_city));
         List<Flight> flights = new ArrayList<>();
         try {
             //Write SQL logic here
-            String sql = "SELECT * FROM flight WHERE departure_city = ? AND arrival_city = ?";
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight " +
+                    "WHERE departure_key = ? AND arrival_key = ? AND retired = FALSE";
             PreparedStatement preparedStatement = connection.prepareStatement(sql);
 
             //write PreparedStatement setString and setInt methods here.
 
-            preparedStatement.setString(1, departure_city);
-            preparedStatement.setString(2, arrival_city);
+            preparedStatement.setString(1, CityIndex.normalize(departure_city));
+            preparedStatement.setString(2, CityIndex.normalize(arrival_city));
             
+            ResultSet rs = preparedStatement.executeQuery();
+            flights = FlightRowMapper.mapAll(rs);
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return flights;
+    }
+
+    /**
+     * Retrieve the flights leaving a city within a time window, in departure order. The query is a range scan of
+     * the (departure_key, departure_time) index: the city fixes the first column and the window bounds the second,
+     * and the index already returns the rows in departure_time order. Flights without a departure time are never
+     * returned.
+     *
+     * @param departure_city the departing city, matched ignoring case.
+     * @param from the start of the window, inclusive.
+     * @param to the end of the window, exclusive.
+     * @return the flights departing from departure_city at or after from and before to.
+     */
+    public List<Flight> getFlightsDepartingBetween(String departure_city, Instant from, Instant to){
+        Connection connection = ConnectionUtil.getConnection(ConnectionUtil.shardForCity(departure_city));
+        List<Flight> flights = new ArrayList<>();
+        try {
+            String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight WHERE departure_key = ? " +
+                    "AND departure_time >= ? AND departure_time < ? AND retired = FALSE ORDER BY departure_time";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, CityIndex.normalize(departure_city));
+            preparedStatement.setObject(2, FlightRowMapper.toTimestamp(from));
+            preparedStatement.setObject(3, FlightRowMapper.toTimestamp(to));
+            flights = FlightRowMapper.mapAll(preparedStatement.executeQuery());
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return flights;
+    }
+
+    /**
+     * Retrieve many flights by their IDs, with one query per shard rather than one per flight.
+     * @param ids flight IDs.
+     * @return the flights found, by flight ID. IDs that no flight has are left out.
+     */
+    public Map<Integer, Flight> getFlightsByIds(Collection<Integer> ids){
+        Map<Integer, Flight> flights = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>(ids);
+        for(int shard = 0; shard < ConnectionUtil.getShardCount() && !missing.isEmpty(); shard++){
+            Connection connection = ConnectionUtil.getConnection(shard);
+            try {
+                String sql = "SELECT " + FlightRowMapper.COLUMNS + " FROM flight WHERE flight_id = ANY(?) " +
+                        "AND retired = FALSE";
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                preparedStatement.setArray(1, connection.createArrayOf("INTEGER", missing.toArray()));
+                ResultSet rs = preparedStatement.executeQuery();
+                for(Flight flight : FlightRowMapper.mapAll(rs)){
+                    flights.put(flight.getFlight_id(), flight);
+                    missing.remove(flight.getFlight_id());
+                }
+            }catch(SQLException e){
+                System.out.println(e.getMessage());
+            }
+        }
+        return flights;
+    }
+
+    /**
+     * Apply patches to existing flights. The changes are grouped by shard and every shard's changes are executed as
+     * JDBC batches in one transaction: a patch becomes an UPDATE that only overwrites the fields the patch sets
+     * (COALESCE keeps the others). A flight whose departure city moves to another shard is inserted into the new
+     * shard in that shard's transaction, keeping its created_at, and deleted from the old one only once the insert
+     * is committed, so a failure can leave a flight in both shards but never in neither (reads then see only one
+     * of the copies, see mergeByFlightId).
+     *
+     * @param existing the flights to patch, as they are now, by flight ID. Every flight is stored in the shard of
+     *                 its departure city.
+     * @param patches at most one patch per flight, each naming a flight of existing.
+     * @return the IDs of the flights that were changed.
+     */
+    public Set<Integer> patchFlights(Map<Integer, Flight> existing, List<FlightPatch> patches){
+        List<List<FlightPatch>> updates = perShard();
+        List<List<Flight>> moves = perShard();
+        Map<Integer, Integer> sources = new HashMap<>();
+        for(FlightPatch patch : patches){
+            Flight before = existing.get(patch.getFlight_id());
+            int from = ConnectionUtil.shardForCity(before.getDeparture_city());
+            Flight after = patch.applyTo(before);
+            int to = ConnectionUtil.shardForCity(after.getDeparture_city());
+            if(from == to){
+                updates.get(from).add(patch);
+            }else{
+                moves.get(to).add(after);
+                sources.put(after.getFlight_id(), from);
+            }
+        }
+        return writeFlights(updates, moves, sources);
+    }
+
+    /**
+     * @return one empty list per shard.
+     */
+    private static <T> List<List<T>> perShard(){
+        List<List<T>> lists = new ArrayList<>();
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            lists.add(new ArrayList<>());
+        }
+        return lists;
+    }
+
+    /**
+     * Update flights in place and move flights between shards, in one transaction per shard. A moved flight is
+     * inserted into its new shard with the created_at it had in its old shard, and deleted from its old shard only
+     * once the insert is committed.
+     * @param updates the patches to apply in place, by shard.
+     * @param moves the flights to insert, as they are after the change, by the shard they move to.
+     * @param sources the shard every moved flight is stored in now, by flight ID.
+     * @return the IDs of the flights that were changed.
+     */
+    private Set<Integer> writeFlights(List<List<FlightPatch>> updates, List<List<Flight>> moves,
+                                      Map<Integer, Integer> sources){
+        int shards = ConnectionUtil.getShardCount();
+        Map<Integer, Timestamp> createdAt = new HashMap<>();
+        List<List<Integer>> movedFrom = perShard();
+        for(Map.Entry<Integer, Integer> source : sources.entrySet()){
+            movedFrom.get(source.getValue()).add(source.getKey());
+        }
+        for(int shard = 0; shard < shards; shard++){
+            if(!movedFrom.get(shard).isEmpty()){
+                createdAt.putAll(getCreatedAt(shard, movedFrom.get(shard)));
+            }
+        }
+
+        Set<Integer> written = new HashSet<>();
+        List<List<Integer>> deletes = perShard();
+        for(int shard = 0; shard < shards; shard++){
+            //a flight whose created_at could not be read is not moved
+            List<Flight> inserts = new ArrayList<>();
+            for(Flight moved : moves.get(shard)){
+                if(createdAt.containsKey(moved.getFlight_id())){
+                    inserts.add(moved);
+                }
+            }
+            if(!updates.get(shard).isEmpty() || !inserts.isEmpty()){
+                Set<Integer> shardWritten = patchFlights(shard, updates.get(shard), inserts, createdAt);
+                written.addAll(shardWritten);
+                for(Flight moved : inserts){
+                    if(shardWritten.contains(moved.getFlight_id())){
+                        deletes.get(sources.get(moved.getFlight_id())).add(moved.getFlight_id());
+                    }
+                }
+            }
+        }
+        for(int shard = 0; shard < shards; shard++){
+            if(!deletes.get(shard).isEmpty()){
+                deleteFlights(shard, deletes.get(shard));
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return the created_at of the given flights of one shard, by flight ID, or an empty map if the query failed.
+     */
+    private Map<Integer, Timestamp> getCreatedAt(int shard, List<Integer> ids){
+        Map<Integer, Timestamp> createdAt = new HashMap<>();
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT flight_id, created_at FROM flight WHERE flight_id = ANY(?) AND retired = FALSE");
+            preparedStatement.setArray(1, connection.createArrayOf("INTEGER", ids.toArray()));
             ResultSet rs = preparedStatement.executeQuery();
             while(rs.next()){
-                Flight flight = new Flight(rs.getInt("flight_id"), rs.getString("departure_city"),
-                        rs.getString("arrival_city"));
-                flights.add(flight);
+                createdAt.put(rs.getInt(1), rs.getTimestamp(2));
             }
         }catch(SQLException e){
             System.out.println(e.getMessage());
+            return new HashMap<>();
         }
-        return flights;
+        return createdAt;
+    }
+
+    /**
+     * Update and insert the flights of one shard as JDBC batches in one transaction.
+     * @param createdAt the created_at of every inserted flight, by flight ID.
+     * @return the IDs of the flights changed, or an empty set if the transaction was rolled back.
+     */
+    private Set<Integer> patchFlights(int shard, List<FlightPatch> updates, List<Flight> inserts,
+                                      Map<Integer, Timestamp> createdAt){
+        Set<Integer> written = new HashSet<>();
+        //a connection of its own: the shared one must stay in auto-commit mode (see ConnectionUtil)
+        try (Connection connection = ConnectionUtil.openConnection(shard)) {
+            connection.setAutoCommit(false);
+            try {
+                String update = "UPDATE flight SET " + PATCH_ASSIGNMENTS +
+                        " WHERE flight_id = ? AND retired = FALSE";
+                PreparedStatement updateStatement = connection.prepareStatement(update);
+                for(int i = 0; i < updates.size(); i++){
+                    FlightPatch patch = updates.get(i);
+                    setPatchParameters(updateStatement, patch);
+                    updateStatement.setInt(5, patch.getFlight_id());
+                    updateStatement.addBatch();
+                    if((i + 1) % PATCH_BATCH_SIZE == 0 || i == updates.size() - 1){
+                        int[] counts = updateStatement.executeBatch();
+                        for(int j = 0; j < counts.length; j++){
+                            //a count of 0 means the flight was moved or removed since it was read
+                            if(counts[j] > 0){
+                                written.add(updates.get(i + 1 - counts.length + j).getFlight_id());
+                            }
+                        }
+                    }
+                }
+
+                PreparedStatement insertStatement = connection.prepareStatement(INSERT_WITH_ID);
+                for(int i = 0; i < inserts.size(); i++){
+                    Flight flight = inserts.get(i);
+                    setInsertParameters(insertStatement, flight);
+                    insertStatement.setTimestamp(6, createdAt.get(flight.getFlight_id()));
+                    insertStatement.addBatch();
+                    if((i + 1) % PATCH_BATCH_SIZE == 0 || i == inserts.size() - 1){
+                        insertStatement.executeBatch();
+                    }
+                    written.add(flight.getFlight_id());
+                }
+
+                connection.commit();
+                return written;
+            } catch (SQLException e) {
+                connection.rollback();
+                System.out.println(e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return new HashSet<>();
+    }
+
+    /**
+     * Delete flights from one shard as a JDBC batch in one transaction.
+     */
+    private void deleteFlights(int shard, List<Integer> ids){
+        try (Connection connection = ConnectionUtil.openConnection(shard)) {
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement preparedStatement = connection.prepareStatement(
+                        "DELETE FROM flight WHERE flight_id = ?");
+                for(int id : ids){
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                System.out.println(e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Apply a patch to every flight matching a predicate, as a single set-based UPDATE per shard. The matching rows
+     * are read and locked, then updated by ID in the same transaction, so the returned flights are exactly the ones
+     * the UPDATE changed, even when flights matching the predicate are inserted in between.
+     * Shards whose flights would move to another shard (because set changes the departure city) are patched by ID
+     * through patchFlights instead. Those moves run after every in-place UPDATE, so the UPDATE of the shard the
+     * flights move to never matches (and reports) them a second time.
+     *
+     * Each shard commits on its own. When a shard fails, the others are still patched, and the flights of every
+     * shard that committed are reported, so the caller can account for the changes that did happen.
+     *
+     * @param where the cities to match, ignoring case. A null city matches any city.
+     * @param set the fields to change on every matching flight.
+     * @param changed receives the flights that were changed, as they were before the change.
+     * @return true if every shard committed, false if any failed.
+     */
+    public boolean patchFlightsWhere(FlightPatch where, FlightPatch set, List<Flight> changed){
+        List<Integer> moving = new ArrayList<>();
+        boolean committed = true;
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            if(where.getDeparture_city() != null && shard != ConnectionUtil.shardForCity(where.getDeparture_city())){
+                continue;
+            }
+            if(set.getDeparture_city() != null && ConnectionUtil.shardForCity(set.getDeparture_city()) != shard){
+                moving.add(shard);
+                continue;
+            }
+            List<Flight> shardChanged = patchFlightsWhere(shard, where, set);
+            if(shardChanged == null){
+                committed = false;
+            }else{
+                changed.addAll(shardChanged);
+            }
+        }
+        for(int shard : moving){
+            committed &= moveFlightsWhere(shard, where, set, changed);
+        }
+        return committed;
+    }
+
+    /**
+     * @return the WHERE clause matching the non-null cities of a predicate against the normalized key columns.
+     */
+    private static String whereClause(FlightPatch where){
+        List<String> conditions = new ArrayList<>();
+        conditions.add("retired = FALSE");
+        if(where.getDeparture_city() != null){
+            conditions.add("departure_key = ?");
+        }
+        if(where.getArrival_city() != null){
+            conditions.add("arrival_key = ?");
+        }
+        return " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Set the parameters of whereClause, starting at parameter index first.
+     */
+    private static void setWhereParameters(PreparedStatement preparedStatement, int first, FlightPatch where)
+            throws SQLException {
+        if(where.getDeparture_city() != null){
+            preparedStatement.setString(first++, CityIndex.normalize(where.getDeparture_city()));
+        }
+        if(where.getArrival_city() != null){
+            preparedStatement.setString(first, CityIndex.normalize(where.getArrival_city()));
+        }
+    }
+
+    /**
+     * Read and update the flights of one shard matching a predicate in one transaction.
+     */
+    private List<Flight> patchFlightsWhere(int shard, FlightPatch where, FlightPatch set){
+        try (Connection connection = ConnectionUtil.openConnection(shard)) {
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement select = connection.prepareStatement("SELECT " + FlightRowMapper.COLUMNS +
+                        " FROM flight" + whereClause(where) + " ORDER BY flight_id FOR UPDATE");
+                setWhereParameters(select, 1, where);
+                List<Flight> matching = FlightRowMapper.mapAll(select.executeQuery());
+                Integer[] ids = new Integer[matching.size()];
+                for(int i = 0; i < ids.length; i++){
+                    ids[i] = matching.get(i).getFlight_id();
+                }
+
+                //only the rows read above are locked: a flight inserted since then also matches the predicate
+                //under READ COMMITTED, so the UPDATE is limited to the IDs that are reported
+                PreparedStatement update = connection.prepareStatement("UPDATE flight SET " + PATCH_ASSIGNMENTS +
+                        " WHERE flight_id = ANY(?)");
+                setPatchParameters(update, set);
+                update.setObject(5, ids);
+                update.executeUpdate();
+
+                connection.commit();
+                return matching;
+            } catch (SQLException e) {
+                connection.rollback();
+                System.out.println(e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Patch the flights of one shard matching a predicate when the patch moves them to another shard.
+     * @param changed receives the flights that were moved, as they were before the change.
+     * @return true if every matching flight was moved.
+     */
+    private boolean moveFlightsWhere(int shard, FlightPatch where, FlightPatch set, List<Flight> changed){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        Map<Integer, Flight> matching = new HashMap<>();
+        List<FlightPatch> patches = new ArrayList<>();
+        try {
+            PreparedStatement select = connection.prepareStatement("SELECT " + FlightRowMapper.COLUMNS +
+                    " FROM flight" + whereClause(where) + " ORDER BY flight_id");
+            setWhereParameters(select, 1, where);
+            for(Flight flight : FlightRowMapper.mapAll(select.executeQuery())){
+                matching.put(flight.getFlight_id(), flight);
+                patches.add(set.withFlight_id(flight.getFlight_id()));
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+            return false;
+        }
+        Set<Integer> written = patchFlights(matching, patches);
+        for(FlightPatch patch : patches){
+            if(written.contains(patch.getFlight_id())){
+                changed.add(matching.get(patch.getFlight_id()));
+            }
+        }
+        return written.size() == patches.size();
+    }
+
+    /**
+     * Set the first five parameters of INSERT_WITH_ID, all but created_at.
+     */
+    private static void setInsertParameters(PreparedStatement preparedStatement, Flight flight) throws SQLException {
+        preparedStatement.setInt(1, flight.getFlight_id());
+        preparedStatement.setString(2, flight.getDeparture_city());
+        preparedStatement.setString(3, flight.getArrival_city());
+        preparedStatement.setObject(4, FlightRowMapper.toTimestamp(flight.getDeparture_time()));
+        preparedStatement.setObject(5, FlightRowMapper.toTimestamp(flight.getArrival_time()));
+    }
+
+    /**
+     * Set the four parameters of PATCH_ASSIGNMENTS.
+     */
+    private static void setPatchParameters(PreparedStatement preparedStatement, FlightPatch patch)
+            throws SQLException {
+        preparedStatement.setString(1, patch.getDeparture_city());
+        preparedStatement.setString(2, patch.getArrival_city());
+        preparedStatement.setObject(3, FlightRowMapper.toTimestamp(patch.getDeparture_time()));
+        preparedStatement.setObject(4, FlightRowMapper.toTimestamp(patch.getArrival_time()));
     }
 }
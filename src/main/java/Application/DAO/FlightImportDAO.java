@@ -0,0 +1,387 @@
+package Application.DAO;
+
+import Application.Model.Flight;
+import Application.Util.ConnectionUtil;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The FlightImportDAO contains the persistence logic used by the bulk loaders: the CSV/NDJSON importer
+ * (Application.FlightImporter) and the snapshot loader (Application.SnapshotTool). Rows are written with JDBC
+ * batches rather than one statement per flight. Every batch of the importer is committed in the same transaction
+ * as its checkpoint, so a failed import can always be resumed from the last committed byte offset of the input
+ * file without loading any row twice.
+ *
+ * Secondary indexes on the flight table are dropped for the duration of an import and rebuilt once at the end,
+ * which is much cheaper than maintaining them row by row. The DDL needed to rebuild them is saved in the
+ * flight_import_deferred_index table first, so an import that crashes midway can still restore them.
+ *
+ * When flights are sharded (see ConnectionUtil), every shard keeps its own bookkeeping tables. Each chunk is split
+ * by shard and every shard commits its part together with its own checkpoint, so an import resumes from the
+ * lowest checkpoint of all shards and skips the shards that already committed a chunk. Resume with the same chunk
+ * size so that the chunk boundaries line up with the checkpoints.
+ */
+public class FlightImportDAO {
+
+    /**
+     * Create the bookkeeping tables used by the importer if they do not exist yet.
+     */
+    public void createImportTables(){
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            createImportTables(shard);
+        }
+    }
+
+    /**
+     * Retrieve the byte offset up to which a source file has already been imported.
+     * @param source the identifier of the input file (its absolute path).
+     * @return the committed offset, or 0 if the source has never been (partially) imported.
+     */
+    public long getCommittedOffset(String source){
+        long committed = Long.MAX_VALUE;
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            committed = Math.min(committed, getCommittedOffset(shard, source));
+        }
+        return committed;
+    }
+
+    /**
+     * Forget the checkpoint of a source file once it has been imported completely.
+     * @param source the identifier of the input file.
+     */
+    public void clearCheckpoint(String source){
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            clearCheckpoint(shard, source);
+        }
+    }
+
+    /**
+     * Insert a chunk of flights as JDBC batches and advance the checkpoint of the source file, all in one
+     * transaction (per shard). Either every flight of the chunk is persisted together with the new offset, or
+     * nothing is.
+     *
+     * @param flights the flights parsed from one chunk of the input file. They do not contain a flight ID.
+     * @param batchSize the number of rows sent to the database per JDBC batch.
+     * @param source the identifier of the input file.
+     * @param committedOffset the byte offset of the input file that has been fully imported after this chunk.
+     * @return true if the chunk was committed, false if it was rolled back.
+     */
+    public boolean insertFlightsWithCheckpoint(List<Flight> flights, int batchSize, String source,
+                                               long committedOffset){
+        List<List<Flight>> flightsPerShard = groupByShard(flights);
+        boolean committed = true;
+        for(int shard = 0; shard < flightsPerShard.size() && committed; shard++){
+            if(getCommittedOffset(shard, source) < committedOffset){
+                committed = insertFlightsWithCheckpoint(shard, flightsPerShard.get(shard), batchSize, source,
+                        committedOffset);
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * Replace every live flight with the given flights, keeping their flight IDs. Retired flights that are not
+     * archived yet are kept, unless the snapshot has a flight with the same ID in the same shard, which then
+     * replaces it. The auto-increment counters are moved past the highest ID in use, in the table or outside of it,
+     * so flights added afterwards get fresh IDs.
+     *
+     * Every shard is staged in its own transaction first, and the transactions are only committed once every shard
+     * is staged, so a shard that fails to load leaves all shards as they were. Only a commit itself failing can
+     * leave some shards replaced and others not; that is logged, and reported like any other failure.
+     *
+     * @param flights the flights to load, including their flight IDs.
+     * @param batchSize the number of rows sent to the database per JDBC batch.
+     * @param usedId the highest flight ID in use outside the flight table, eg by archived flights, or 0.
+     * @return true if every shard was replaced, false if the replace was rolled back or only partly committed.
+     */
+    public boolean replaceAllFlights(List<Flight> flights, int batchSize, int usedId){
+        List<List<Flight>> flightsPerShard = groupByShard(flights);
+        List<Connection> connections = new ArrayList<>();
+        int committed = 0;
+        int maxId = usedId;
+        try {
+            for(int shard = 0; shard < flightsPerShard.size(); shard++){
+                Connection connection = ConnectionUtil.openConnection(shard);
+                connections.add(connection);
+                connection.setAutoCommit(false);
+                maxId = Math.max(maxId, stageAllFlights(connection, flightsPerShard.get(shard), batchSize));
+            }
+            for(Connection connection : connections){
+                connection.commit();
+                committed++;
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+            if(committed > 0){
+                System.out.println("the flights were only replaced in " + committed + " of " +
+                        flightsPerShard.size() + " shards");
+            }
+            for(int shard = committed; shard < connections.size(); shard++){
+                try {
+                    connections.get(shard).rollback();
+                } catch (SQLException rollbackFailure) {
+                    System.out.println(rollbackFailure.getMessage());
+                }
+            }
+            return false;
+        } finally {
+            for(Connection connection : connections){
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+        }
+        boolean restarted = true;
+        for(int shard = 0; shard < flightsPerShard.size(); shard++){
+            restarted &= restartFlightIds(shard, ConnectionUtil.nextFlightIdOfShard(shard, maxId));
+        }
+        return restarted;
+    }
+
+    /**
+     * Drop every secondary (non primary key) index of the flight table, remembering the DDL needed to rebuild it
+     * in flight_import_deferred_index.
+     * @return the number of indexes that were dropped.
+     */
+    public int dropSecondaryIndexes(){
+        int dropped = 0;
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            dropped += dropSecondaryIndexes(shard);
+        }
+        return dropped;
+    }
+
+    /**
+     * Rebuild every index that was dropped by dropSecondaryIndexes, including ones left behind by an earlier
+     * import that did not finish.
+     * @return the number of indexes that were rebuilt.
+     */
+    public int restoreSecondaryIndexes(){
+        int restored = 0;
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            restored += restoreSecondaryIndexes(shard);
+        }
+        return restored;
+    }
+
+    /**
+     * Split flights by the shard of their departure city.
+     */
+    private static List<List<Flight>> groupByShard(List<Flight> flights){
+        List<List<Flight>> flightsPerShard = new ArrayList<>();
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            flightsPerShard.add(new ArrayList<>());
+        }
+        for(Flight flight : flights){
+            flightsPerShard.get(ConnectionUtil.shardForCity(flight.getDeparture_city())).add(flight);
+        }
+        return flightsPerShard;
+    }
+
+    private void createImportTables(int shard){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            PreparedStatement ps1 = connection.prepareStatement("create table if not exists flight_import_checkpoint(" +
+                    "source varchar(1024) primary key, " +
+                    "committed_offset bigint not null);");
+            ps1.executeUpdate();
+            PreparedStatement ps2 = connection.prepareStatement("create table if not exists " +
+                    "flight_import_deferred_index(" +
+                    "index_name varchar(255) primary key, " +
+                    "ddl varchar(4096) not null);");
+            ps2.executeUpdate();
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+    }
+
+    private long getCommittedOffset(int shard, String source){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            String sql = "SELECT committed_offset FROM flight_import_checkpoint WHERE source = ?";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, source);
+            ResultSet rs = preparedStatement.executeQuery();
+            if(rs.next()){
+                return rs.getLong("committed_offset");
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return 0;
+    }
+
+    private void clearCheckpoint(int shard, String source){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        try {
+            String sql = "DELETE FROM flight_import_checkpoint WHERE source = ?";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            preparedStatement.setString(1, source);
+            preparedStatement.executeUpdate();
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Insert the flights of one shard as JDBC batches and advance that shard's checkpoint in one transaction.
+     */
+    private boolean insertFlightsWithCheckpoint(int shard, List<Flight> flights, int batchSize, String source,
+                                                long committedOffset){
+        try (Connection connection = ConnectionUtil.openConnection(shard)) {
+            connection.setAutoCommit(false);
+            try {
+                String sql = "INSERT INTO flight (departure_city, arrival_city) VALUES (?, ?)";
+                PreparedStatement preparedStatement = connection.prepareStatement(sql);
+                int pending = 0;
+                for (Flight flight : flights) {
+                    preparedStatement.setString(1, flight.getDeparture_city());
+                    preparedStatement.setString(2, flight.getArrival_city());
+                    preparedStatement.addBatch();
+                    if (++pending == batchSize) {
+                        preparedStatement.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    preparedStatement.executeBatch();
+                }
+
+                PreparedStatement checkpoint = connection.prepareStatement(
+                        "MERGE INTO flight_import_checkpoint (source, committed_offset) KEY (source) VALUES (?, ?)");
+                checkpoint.setString(1, source);
+                checkpoint.setLong(2, committedOffset);
+                checkpoint.executeUpdate();
+
+                connection.commit();
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                System.out.println(e.getMessage());
+            }
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Replace the live flights of one shard in the connection's open transaction, without committing.
+     * @return the highest flight ID left in the shard, retired flights included.
+     */
+    private int stageAllFlights(Connection connection, List<Flight> flights, int batchSize) throws SQLException {
+        connection.prepareStatement("DELETE FROM flight WHERE retired = FALSE").executeUpdate();
+        String sql = "MERGE INTO flight (flight_id, departure_city, arrival_city, departure_time, arrival_time, " +
+                "retired, created_at) KEY (flight_id) VALUES (?, ?, ?, ?, ?, FALSE, CURRENT_TIMESTAMP)";
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        int pending = 0;
+        for (Flight flight : flights) {
+            preparedStatement.setInt(1, flight.getFlight_id());
+            preparedStatement.setString(2, flight.getDeparture_city());
+            preparedStatement.setString(3, flight.getArrival_city());
+            preparedStatement.setObject(4, FlightRowMapper.toTimestamp(flight.getDeparture_time()));
+            preparedStatement.setObject(5, FlightRowMapper.toTimestamp(flight.getArrival_time()));
+            preparedStatement.addBatch();
+            if (++pending == batchSize) {
+                preparedStatement.executeBatch();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            preparedStatement.executeBatch();
+        }
+        ResultSet rs = connection.prepareStatement("SELECT MAX(flight_id) FROM flight").executeQuery();
+        return rs.next() ? rs.getInt(1) : 0;
+    }
+
+    /**
+     * Restart the flight_id sequence of one shard at nextId. DDL commits implicitly in H2, so this can only run once
+     * the rows it makes room for are committed.
+     */
+    private boolean restartFlightIds(int shard, int nextId){
+        try {
+            ConnectionUtil.getConnection(shard).prepareStatement("ALTER TABLE flight ALTER COLUMN flight_id " +
+                    "RESTART WITH " + nextId).executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    private int dropSecondaryIndexes(int shard){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        int dropped = 0;
+        try {
+            String sql = "SELECT i.INDEX_NAME, i.INDEX_TYPE_NAME, c.COLUMN_NAME FROM INFORMATION_SCHEMA.INDEXES i " +
+                    "JOIN INFORMATION_SCHEMA.INDEX_COLUMNS c ON c.INDEX_SCHEMA = i.INDEX_SCHEMA " +
+                    "AND c.INDEX_NAME = i.INDEX_NAME " +
+                    "WHERE i.TABLE_SCHEMA = SCHEMA() AND i.TABLE_NAME = 'FLIGHT' " +
+                    "AND i.INDEX_TYPE_NAME IN ('INDEX', 'UNIQUE INDEX') " +
+                    "ORDER BY i.INDEX_NAME, c.ORDINAL_POSITION";
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            ResultSet rs = preparedStatement.executeQuery();
+            List<String> names = new ArrayList<>();
+            List<String> ddls = new ArrayList<>();
+            String currentName = null;
+            StringBuilder ddl = null;
+            while(rs.next()){
+                String name = rs.getString("INDEX_NAME");
+                if(!name.equals(currentName)){
+                    if(ddl != null){
+                        ddls.add(ddl.append(")").toString());
+                    }
+                    currentName = name;
+                    names.add(name);
+                    String unique = "UNIQUE INDEX".equals(rs.getString("INDEX_TYPE_NAME")) ? "UNIQUE " : "";
+                    ddl = new StringBuilder("CREATE " + unique + "INDEX IF NOT EXISTS " + name + " ON flight (");
+                }else{
+                    ddl.append(", ");
+                }
+                ddl.append(rs.getString("COLUMN_NAME"));
+            }
+            if(ddl != null){
+                ddls.add(ddl.append(")").toString());
+            }
+
+            for(int i = 0; i < names.size(); i++){
+                PreparedStatement save = connection.prepareStatement(
+                        "MERGE INTO flight_import_deferred_index (index_name, ddl) KEY (index_name) VALUES (?, ?)");
+                save.setString(1, names.get(i));
+                save.setString(2, ddls.get(i));
+                save.executeUpdate();
+                PreparedStatement drop = connection.prepareStatement("DROP INDEX IF EXISTS " + names.get(i));
+                drop.executeUpdate();
+                dropped++;
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return dropped;
+    }
+
+    private int restoreSecondaryIndexes(int shard){
+        Connection connection = ConnectionUtil.getConnection(shard);
+        int restored = 0;
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(
+                    "SELECT index_name, ddl FROM flight_import_deferred_index");
+            ResultSet rs = preparedStatement.executeQuery();
+            while(rs.next()){
+                connection.prepareStatement(rs.getString("ddl")).executeUpdate();
+                PreparedStatement forget = connection.prepareStatement(
+                        "DELETE FROM flight_import_deferred_index WHERE index_name = ?");
+                forget.setString(1, rs.getString("index_name"));
+                forget.executeUpdate();
+                restored++;
+            }
+        }catch(SQLException e){
+            System.out.println(e.getMessage());
+        }
+        return restored;
+    }
+}
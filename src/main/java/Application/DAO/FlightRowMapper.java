@@ -0,0 +1,89 @@
+package Application.DAO;
+
+import Application.Model.Flight;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps rows of the flight table to Flight objects. Looking a column up by its label (rs.getInt("flight_id")) makes
+ * the driver search the column names on every call; this mapper looks the columns up once, when it is created for a
+ * ResultSet, and then reads every row by column index. That saves time per row, not allocation (see
+ * FlightColumnLookupBenchmark).
+ *
+ * The times are stored as TIMESTAMP WITH TIME ZONE and read as OffsetDateTime, which JDBC maps without involving the
+ * JVM's default time zone.
+ */
+public class FlightRowMapper implements RowMapper<Flight> {
+
+    /**
+     * The columns every flight query selects, in the order the mapper expects them when used with a query that
+     * selects nothing else.
+     */
+    public static final String COLUMNS = "flight_id, departure_city, arrival_city, departure_time, arrival_time";
+
+    private final int flightIdColumn;
+    private final int departureCityColumn;
+    private final int arrivalCityColumn;
+    private final int departureTimeColumn;
+    private final int arrivalTimeColumn;
+
+    private FlightRowMapper(int flightIdColumn, int departureCityColumn, int arrivalCityColumn,
+                            int departureTimeColumn, int arrivalTimeColumn) {
+        this.flightIdColumn = flightIdColumn;
+        this.departureCityColumn = departureCityColumn;
+        this.arrivalCityColumn = arrivalCityColumn;
+        this.departureTimeColumn = departureTimeColumn;
+        this.arrivalTimeColumn = arrivalTimeColumn;
+    }
+
+    /**
+     * Create a mapper for a ResultSet, resolving the positions of the flight columns in it.
+     * @param rs a ResultSet containing the columns of COLUMNS, in any order.
+     * @return a mapper to use for every row of rs.
+     */
+    public static FlightRowMapper forResultSet(ResultSet rs) throws SQLException {
+        return new FlightRowMapper(rs.findColumn("flight_id"), rs.findColumn("departure_city"),
+                rs.findColumn("arrival_city"), rs.findColumn("departure_time"), rs.findColumn("arrival_time"));
+    }
+
+    /**
+     * Map every remaining row of a ResultSet.
+     * @param rs a ResultSet containing the flight columns.
+     * @return the flights, in the order of the rows.
+     */
+    public static List<Flight> mapAll(ResultSet rs) throws SQLException {
+        FlightRowMapper mapper = forResultSet(rs);
+        List<Flight> flights = new ArrayList<>();
+        while (rs.next()) {
+            flights.add(mapper.mapRow(rs));
+        }
+        return flights;
+    }
+
+    @Override
+    public Flight mapRow(ResultSet rs) throws SQLException {
+        return new Flight(rs.getInt(flightIdColumn), rs.getString(departureCityColumn),
+                rs.getString(arrivalCityColumn), getInstant(rs, departureTimeColumn),
+                getInstant(rs, arrivalTimeColumn));
+    }
+
+    private static Instant getInstant(ResultSet rs, int column) throws SQLException {
+        OffsetDateTime time = rs.getObject(column, OffsetDateTime.class);
+        return time == null ? null : time.toInstant();
+    }
+
+    /**
+     * Convert a time to the type JDBC stores in a TIMESTAMP WITH TIME ZONE column, for PreparedStatement.setObject.
+     * @param time an instant, or null.
+     * @return the instant at UTC, or null.
+     */
+    public static OffsetDateTime toTimestamp(Instant time) {
+        return time == null ? null : time.atOffset(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,22 @@
+package Application.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A RowMapper turns the current row of a ResultSet into an object. DAOs create one mapper per query, once the
+ * ResultSet is open, so that any per-query work (such as resolving column positions) is done once instead of once
+ * per row.
+ *
+ * @param <T> the type of object each row is mapped to.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Map the row the ResultSet is currently positioned on. Implementations must not move the cursor.
+     * @param rs a ResultSet positioned on a row.
+     * @return the mapped object.
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+}
@@ -0,0 +1,190 @@
+package Application;
+
+import Application.DAO.FlightImportDAO;
+import Application.Model.Flight;
+import Application.Util.FlightFileParser;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A command line bulk loader for the flight table, meant for onboarding a carrier with millions of rows where
+ * going through POST /flights one flight at a time would take hours. Run it against the same database as the API:
+ *
+ *      java -cp ... Application.FlightImporter flights.csv [--format csv|ndjson] [--threads 4]
+ *                   [--chunk-mb 32] [--batch 5000] [--restart]
+ *
+ * The input file is memory-mapped and split into chunks which are parsed in parallel by FlightFileParser. Parsed
+ * chunks are inserted in file order, and each chunk is committed together with a checkpoint, so running the same
+ * command again after a failure resumes where the last run stopped (--restart ignores the checkpoint). Secondary
+ * indexes are rebuilt once at the end instead of being maintained for every row. Lines that cannot be parsed are
+ * skipped, and their number is reported at the end.
+ */
+public class FlightImporter {
+    /**
+     * The largest --chunk-mb: a chunk is memory-mapped as a whole, and a single mapping is limited to 2GB.
+     */
+    private static final long MAX_CHUNK_MB = Integer.MAX_VALUE / (1024 * 1024);
+
+    private final FlightImportDAO flightImportDAO;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int chunkSize = 32 * 1024 * 1024;
+    private int batchSize = 5000;
+    private long rejectedLines;
+
+    public FlightImporter(){
+        this(new FlightImportDAO());
+    }
+
+    public FlightImporter(FlightImportDAO flightImportDAO){
+        this.flightImportDAO = flightImportDAO;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @return the number of lines the last completed import skipped because they could not be parsed.
+     */
+    public long getRejectedLines() {
+        return rejectedLines;
+    }
+
+    public static void main(String[] args) {
+        if(args.length == 0){
+            System.out.println("usage: FlightImporter <file> [--format csv|ndjson] [--threads n] [--chunk-mb n] " +
+                    "[--batch n] [--restart]");
+            return;
+        }
+        Path file = Paths.get(args[0]);
+        FlightFileParser.Format format = FlightFileParser.formatOf(file.getFileName().toString());
+        boolean restart = false;
+        FlightImporter importer = new FlightImporter();
+        for(int i = 1; i < args.length; i++){
+            switch (args[i]) {
+                case "--format":
+                    format = FlightFileParser.Format.valueOf(args[++i].toUpperCase());
+                    break;
+                case "--threads":
+                    importer.setThreads(Integer.parseInt(args[++i]));
+                    break;
+                case "--chunk-mb":
+                    long chunkMegabytes = Long.parseLong(args[++i]);
+                    if(chunkMegabytes < 1 || chunkMegabytes > MAX_CHUNK_MB){
+                        System.out.println("--chunk-mb must be between 1 and " + MAX_CHUNK_MB);
+                        return;
+                    }
+                    importer.setChunkSize((int) (chunkMegabytes * 1024 * 1024));
+                    break;
+                case "--batch":
+                    importer.setBatchSize(Integer.parseInt(args[++i]));
+                    break;
+                case "--restart":
+                    restart = true;
+                    break;
+                default:
+                    System.out.println("unknown option " + args[i]);
+                    return;
+            }
+        }
+        try {
+            importer.importFile(file, format, restart);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Import every flight of a file into the flight table.
+     *
+     * @param file the CSV or NDJSON file to import.
+     * @param format the format of the file.
+     * @param restart true to ignore the checkpoint of an earlier, unfinished import of the same file.
+     * @return the number of flights inserted by this run, or -1 if a chunk failed to commit. In that case the
+     *         import can be resumed by running it again.
+     */
+    public long importFile(Path file, FlightFileParser.Format format, boolean restart) throws IOException {
+        String source = file.toAbsolutePath().normalize().toString();
+        flightImportDAO.createImportTables();
+        if(restart){
+            flightImportDAO.clearCheckpoint(source);
+        }
+        long startOffset = flightImportDAO.getCommittedOffset(source);
+        if(startOffset > 0){
+            System.out.println("resuming " + source + " from byte " + startOffset);
+        }
+
+        long started = System.nanoTime();
+        long rows = 0;
+        boolean failed = false;
+        FlightFileParser parser = new FlightFileParser(format);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<FlightFileParser.Chunk> chunks = FlightFileParser.split(channel, startOffset, chunkSize);
+            flightImportDAO.dropSecondaryIndexes();
+
+            //keep a bounded number of chunks parsing ahead of the inserts so memory use stays flat on huge files
+            Deque<Future<List<Flight>>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            for(int i = 0; i < chunks.size() && !failed; i++){
+                while(submitted < chunks.size() && inFlight.size() < threads * 2){
+                    FlightFileParser.Chunk chunk = chunks.get(submitted++);
+                    inFlight.add(pool.submit(() -> parser.parse(channel, chunk)));
+                }
+                List<Flight> flights = inFlight.poll().get();
+                FlightFileParser.Chunk chunk = chunks.get(i);
+                if(flightImportDAO.insertFlightsWithCheckpoint(flights, batchSize, source, chunk.end)){
+                    rows += flights.size();
+                    report(rows, started, chunk.end, channel.size());
+                }else{
+                    failed = true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            failed = true;
+        } finally {
+            pool.shutdownNow();
+            flightImportDAO.restoreSecondaryIndexes();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        if(failed){
+            System.out.println("import of " + source + " stopped after " + rows + " rows; run again to resume");
+            return -1;
+        }
+        flightImportDAO.clearCheckpoint(source);
+        rejectedLines = parser.getRejectedLines();
+        System.out.printf("imported %d rows in %.2f s (%.0f rows/sec), rejected %d unparseable lines%n", rows,
+                seconds, rows / Math.max(seconds, 1e-9), rejectedLines);
+        return rows;
+    }
+
+    private void report(long rows, long started, long offset, long size) {
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d rows, %.1f%% of file, %.0f rows/sec%n", rows, 100.0 * offset / Math.max(size, 1),
+                rows / Math.max(seconds, 1e-9));
+    }
+}
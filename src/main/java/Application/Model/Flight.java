@@ -1,24 +1,31 @@
 package Application.Model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 /**
  * This class is used to model a flight. The format of this data should match both its JSON representation and
  *  its associated database table.
  *
- * Do not change anything in this class.
+ * A Flight is immutable: its fields are final and there are no setters. That makes it safe to share one instance
+ * between threads and caches (such as the change feed and the route statistics), and lets equals and hashCode
+ * stay consistent for as long as the object lives. To change a flight, create a new one.
+ *
+ * departure_time and arrival_time are the scheduled times of the flight, written in JSON as ISO-8601 instants (eg
+ * "2026-10-19T14:30:00Z"). Both are optional, and are kept to the second: fractions of a second are dropped, so a
+ * flight is equal to itself after a trip through the database or a snapshot.
  */
-public class Flight {
-    public int flight_id;
-    public String departure_city;
-    public String arrival_city;
-
-    /**
-     * A default, no-args constructor is REQUIRED for Jackson ObjectMapper to work.
-     */
-    public Flight(){
+public final class Flight {
+    private final int flight_id;
+    private final String departure_city;
+    private final String arrival_city;
+    private final Instant departure_time;
+    private final Instant arrival_time;
 
-    }
     /**
      * a constructor without a flight_id for when persisting a flight to the database where the flight_id has not been
      * created yet.
@@ -26,23 +33,40 @@ public class Flight {
      * @param arrival_city
      */
     public Flight(String departure_city, String arrival_city) {
-        this.departure_city = departure_city;
-        this.arrival_city = arrival_city;
+        this(0, departure_city, arrival_city);
     }
     /**
-     * an all args constructor for use when retrieving a flight from the database.
+     * a constructor for a flight without a schedule.
      * @param flight_id
      * @param departure_city
      * @param arrival_city
      */
     public Flight(int flight_id, String departure_city, String arrival_city) {
+        this(flight_id, departure_city, arrival_city, null, null);
+    }
+    /**
+     * an all args constructor for use when retrieving a flight from the database. Jackson ObjectMapper also uses this
+     * constructor to create flights from JSON; a missing flight_id is read as 0 and missing times as null.
+     * @param flight_id
+     * @param departure_city
+     * @param arrival_city
+     * @param departure_time the scheduled departure, or null.
+     * @param arrival_time the scheduled arrival, or null.
+     */
+    @JsonCreator
+    public Flight(@JsonProperty("flight_id") int flight_id,
+                  @JsonProperty("departure_city") String departure_city,
+                  @JsonProperty("arrival_city") String arrival_city,
+                  @JsonProperty("departure_time") Instant departure_time,
+                  @JsonProperty("arrival_time") Instant arrival_time) {
         this.flight_id = flight_id;
         this.departure_city = departure_city;
         this.arrival_city = arrival_city;
+        this.departure_time = departure_time == null ? null : departure_time.truncatedTo(ChronoUnit.SECONDS);
+        this.arrival_time = arrival_time == null ? null : arrival_time.truncatedTo(ChronoUnit.SECONDS);
     }
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
+     * getters are required to correctly parse to JSON using Jackson ObjectMapper.
      * @return flight_id
      */
     public int getFlight_id() {
@@ -50,48 +74,43 @@ public class Flight {
     }
 
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
-     * @param flight_id
+     * getters are required to correctly parse to JSON using Jackson ObjectMapper.
+     * @return departure_city
      */
-    public void setFlight_id(int flight_id) {
-        this.flight_id = flight_id;
+    public String getDeparture_city() {
+        return departure_city;
     }
 
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
-     * @return departure_city
+     * getters are required to correctly parse to JSON using Jackson ObjectMapper.
+     * @return arrival_city
      */
-    public String getDeparture_city() {
-        return departure_city;
+    public String getArrival_city() {
+        return arrival_city;
     }
 
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
-     * @param departure_city
+     * getters are required to correctly parse to JSON using Jackson ObjectMapper.
+     * @return departure_time, or null if the flight has no schedule.
      */
-    public void setDeparture_city(String departure_city) {
-        this.departure_city = departure_city;
+    public Instant getDeparture_time() {
+        return departure_time;
     }
 
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
-     * @return arrival_city
+     * getters are required to correctly parse to JSON using Jackson ObjectMapper.
+     * @return arrival_time, or null if the flight has no schedule.
      */
-    public String getArrival_city() {
-        return arrival_city;
+    public Instant getArrival_time() {
+        return arrival_time;
     }
 
     /**
-     * getters and setters are required to correctly parse to/from JSON using Jackson ObjectMapper. These were
-     * generated by the IDE.
-     * @param arrival_city
+     * @param flight_id a flight ID.
+     * @return a copy of this flight with the given flight ID.
      */
-    public void setArrival_city(String arrival_city) {
-        this.arrival_city = arrival_city;
+    public Flight withFlight_id(int flight_id) {
+        return new Flight(flight_id, departure_city, arrival_city, departure_time, arrival_time);
     }
 
     /**
@@ -105,12 +124,13 @@ public class Flight {
                 "flight_id=" + flight_id +
                 ", departure_city='" + departure_city + '\'' +
                 ", arrival_city='" + arrival_city + '\'' +
+                ", departure_time=" + departure_time +
+                ", arrival_time=" + arrival_time +
                 '}';
     }
     /**
      * An equals method that determines if another flight is equal to this one.
      * This was auto-generated by the IDE (alt+insert).
-     * There is no need to change anything in this method.
      * @param o some other object (such as Flight).
      * @return true if this flight is equivalent to f, false otherwise.
      */
@@ -119,7 +139,24 @@ public class Flight {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Flight flight = (Flight) o;
-        return this.flight_id == flight.flight_id && Objects.equals(departure_city, flight.departure_city) && Objects.equals(arrival_city, flight.arrival_city);
+        return this.flight_id == flight.flight_id && Objects.equals(departure_city, flight.departure_city)
+                && Objects.equals(arrival_city, flight.arrival_city)
+                && Objects.equals(departure_time, flight.departure_time)
+                && Objects.equals(arrival_time, flight.arrival_time);
+    }
+
+    /**
+     * A hashCode method consistent with equals, so that flights can be used in hash based collections.
+     * @return a hash of every field.
+     */
+    @Override
+    public int hashCode() {
+        int result = flight_id;
+        result = 31 * result + Objects.hashCode(departure_city);
+        result = 31 * result + Objects.hashCode(arrival_city);
+        result = 31 * result + Objects.hashCode(departure_time);
+        result = 31 * result + Objects.hashCode(arrival_time);
+        return result;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package Application.Model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * This class is used to model the body of PATCH /flights, which changes many flights at once. It has one of two
+ * forms:
+ *
+ *  a list of changes, each naming a flight and the fields to change:
+ *          {"changes":[{"flight_id":1,"arrival_city":"Reston"},{"flight_id":4,"departure_city":"Tampa"}]}
+ *
+ *  or a predicate selecting flights by their cities, and the fields to change on every selected flight:
+ *          {"where":{"departure_city":"Tampa","arrival_city":"Dallas"},"set":{"arrival_city":"Reston"}}
+ *      The cities of where are matched ignoring case, like the route lookup. A city left out of where matches any
+ *      city, but where must name at least one.
+ */
+public class FlightBulkPatch {
+    private final List<FlightPatch> changes;
+    private final FlightPatch where;
+    private final FlightPatch set;
+
+    @JsonCreator
+    public FlightBulkPatch(@JsonProperty("changes") List<FlightPatch> changes,
+                           @JsonProperty("where") FlightPatch where,
+                           @JsonProperty("set") FlightPatch set) {
+        this.changes = changes;
+        this.where = where;
+        this.set = set;
+    }
+
+    /**
+     * @return the changes of the list form, or null if this is the predicate form.
+     */
+    public List<FlightPatch> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the cities selecting the flights to change in the predicate form.
+     */
+    public FlightPatch getWhere() {
+        return where;
+    }
+
+    /**
+     * @return the fields to change on every selected flight in the predicate form.
+     */
+    public FlightPatch getSet() {
+        return set;
+    }
+}
@@ -0,0 +1,51 @@
+package Application.Model;
+
+/**
+ * This class is used to model a change made to a flight, as published on the GET /flights/changes feed.
+ * Every change carries a sequence number which increases by one per change. Clients can use the sequence number of
+ * the last change they saw to resume the feed after reconnecting.
+ */
+public class FlightChange {
+    public static final String INSERT = "insert";
+    public static final String UPDATE = "update";
+    public static final String RETIRE = "retire";
+    public static final String RESET = "reset";
+
+    private final long sequence;
+    private final String type;
+    private final Flight flight;
+
+    public FlightChange(long sequence, String type, Flight flight) {
+        this.sequence = sequence;
+        this.type = type;
+        this.flight = flight;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the kind of change: "insert", "update", "retire" or "reset" (the flights were replaced all at once, eg
+     *         by loading a snapshot, and should be reloaded).
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the flight as it was persisted by the change, or null for a reset.
+     */
+    public Flight getFlight() {
+        return flight;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightChange{" +
+                "sequence=" + sequence +
+                ", type='" + type + '\'' +
+                ", flight=" + flight +
+                '}';
+    }
+}
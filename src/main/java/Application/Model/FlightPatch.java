@@ -0,0 +1,126 @@
+package Application.Model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * This class is used to model a partial change to a flight, as sent to the PATCH endpoints. Only the fields that
+ * should change are set; a null field keeps the flight's current value. eg
+ *          {"arrival_city":"Dallas"}
+ * changes the arrival city and leaves the departure city alone.
+ *
+ * In the list form of PATCH /flights, every patch also names the flight it applies to with flight_id. In
+ * PATCH /flights/{flight_id} the flight is identified by the path and flight_id is ignored.
+ *
+ * Times are kept to the second like those of a Flight, so the flight a patch reports is the one that is stored.
+ */
+public class FlightPatch {
+    private final Integer flight_id;
+    private final String departure_city;
+    private final String arrival_city;
+    private final Instant departure_time;
+    private final Instant arrival_time;
+
+    @JsonCreator
+    public FlightPatch(@JsonProperty("flight_id") Integer flight_id,
+                       @JsonProperty("departure_city") String departure_city,
+                       @JsonProperty("arrival_city") String arrival_city,
+                       @JsonProperty("departure_time") Instant departure_time,
+                       @JsonProperty("arrival_time") Instant arrival_time) {
+        this.flight_id = flight_id;
+        this.departure_city = departure_city;
+        this.arrival_city = arrival_city;
+        this.departure_time = departure_time == null ? null : departure_time.truncatedTo(ChronoUnit.SECONDS);
+        this.arrival_time = arrival_time == null ? null : arrival_time.truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    public FlightPatch(Integer flight_id, String departure_city, String arrival_city) {
+        this(flight_id, departure_city, arrival_city, null, null);
+    }
+
+    public FlightPatch(String departure_city, String arrival_city) {
+        this(null, departure_city, arrival_city);
+    }
+
+    /**
+     * @return the ID of the flight to change, or null if the patch does not name one.
+     */
+    public Integer getFlight_id() {
+        return flight_id;
+    }
+
+    /**
+     * @return the new departure city, or null to keep the current one.
+     */
+    public String getDeparture_city() {
+        return departure_city;
+    }
+
+    /**
+     * @return the new arrival city, or null to keep the current one.
+     */
+    public String getArrival_city() {
+        return arrival_city;
+    }
+
+    /**
+     * @return the new departure time, or null to keep the current one.
+     */
+    public Instant getDeparture_time() {
+        return departure_time;
+    }
+
+    /**
+     * @return the new arrival time, or null to keep the current one.
+     */
+    public Instant getArrival_time() {
+        return arrival_time;
+    }
+
+    /**
+     * @param flight_id a flight ID.
+     * @return a copy of this patch applying to the given flight.
+     */
+    public FlightPatch withFlight_id(int flight_id) {
+        return new FlightPatch(flight_id, departure_city, arrival_city, departure_time, arrival_time);
+    }
+
+    /**
+     * Combine two patches of the same flight, as if this patch was applied first and then the later one.
+     * @param later a patch applied after this one.
+     * @return a patch with the fields of later, and the fields of this patch where later has none.
+     */
+    public FlightPatch then(FlightPatch later) {
+        return new FlightPatch(flight_id,
+                later.departure_city != null ? later.departure_city : departure_city,
+                later.arrival_city != null ? later.arrival_city : arrival_city,
+                later.departure_time != null ? later.departure_time : departure_time,
+                later.arrival_time != null ? later.arrival_time : arrival_time);
+    }
+
+    /**
+     * @param flight the flight as it is now.
+     * @return the flight as it is after applying this patch.
+     */
+    public Flight applyTo(Flight flight) {
+        return new Flight(flight.getFlight_id(),
+                departure_city != null ? departure_city : flight.getDeparture_city(),
+                arrival_city != null ? arrival_city : flight.getArrival_city(),
+                departure_time != null ? departure_time : flight.getDeparture_time(),
+                arrival_time != null ? arrival_time : flight.getArrival_time());
+    }
+
+    @Override
+    public String toString() {
+        return "FlightPatch{" +
+                "flight_id=" + flight_id +
+                ", departure_city='" + departure_city + '\'' +
+                ", arrival_city='" + arrival_city + '\'' +
+                ", departure_time=" + departure_time +
+                ", arrival_time=" + arrival_time +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package Application.Model;
+
+/**
+ * This class is used to model the outcome of a change to one flight, as returned by PATCH /flights. eg
+ *          {"flight_id":1,"status":"updated","flight":{"flight_id":1,"departure_city":"tampa","arrival_city":"Reston"}}
+ */
+public class FlightPatchResult {
+    public static final String UPDATED = "updated";
+    public static final String NOT_FOUND = "not_found";
+    public static final String INVALID = "invalid";
+    public static final String FAILED = "failed";
+
+    private final Integer flight_id;
+    private final String status;
+    private final Flight flight;
+
+    public FlightPatchResult(Integer flight_id, String status, Flight flight) {
+        this.flight_id = flight_id;
+        this.status = status;
+        this.flight = flight;
+    }
+
+    /**
+     * @return the ID of the flight the change was for, or null if the change did not name one.
+     */
+    public Integer getFlight_id() {
+        return flight_id;
+    }
+
+    /**
+     * @return "updated", "not_found" (no flight has the ID), "invalid" (the change names no flight or sets a blank
+     *         city) or "failed" (the database rejected the change).
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the flight as persisted by the change, or null if it was not updated.
+     */
+    public Flight getFlight() {
+        return flight;
+    }
+
+    @Override
+    public String toString() {
+        return "FlightPatchResult{" +
+                "flight_id=" + flight_id +
+                ", status='" + status + '\'' +
+                ", flight=" + flight +
+                '}';
+    }
+}
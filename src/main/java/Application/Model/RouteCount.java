@@ -0,0 +1,54 @@
+package Application.Model;
+
+import java.util.Objects;
+
+/**
+ * This class is used to model the number of flights on a route (a departure city and arrival city pair), as
+ * returned by the /stats endpoints.
+ */
+public class RouteCount {
+    private final String departure_city;
+    private final String arrival_city;
+    private final long count;
+
+    public RouteCount(String departure_city, String arrival_city, long count) {
+        this.departure_city = departure_city;
+        this.arrival_city = arrival_city;
+        this.count = count;
+    }
+
+    public String getDeparture_city() {
+        return departure_city;
+    }
+
+    public String getArrival_city() {
+        return arrival_city;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteCount{" +
+                "departure_city='" + departure_city + '\'' +
+                ", arrival_city='" + arrival_city + '\'' +
+                ", count=" + count +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RouteCount that = (RouteCount) o;
+        return count == that.count && Objects.equals(departure_city, that.departure_city)
+                && Objects.equals(arrival_city, that.arrival_city);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(departure_city, arrival_city, count);
+    }
+}
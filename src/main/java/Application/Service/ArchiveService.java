@@ -0,0 +1,182 @@
+package Application.Service;
+
+import Application.DAO.FlightArchiveDAO;
+import Application.Model.Flight;
+import Application.Util.ArchiveSegmentStore;
+import Application.Util.CityIndex;
+import Application.Util.ConnectionUtil;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ArchiveService keeps the flight table small by moving flights that are no longer live into compressed segment
+ * files on disk (see ArchiveSegmentStore). This is the cold tier: live queries never read it, and archived flights
+ * are only returned when explicitly asked for (GET /flights?includeArchived=true).
+ *
+ * A flight leaves the flight table in two steps:
+ *      1. it is retired, either explicitly (POST /flights/{flight_id}/retire) or by compaction when it was created
+ *         longer ago than the retention period. Retired rows are hidden from every FlightDAO query at once.
+ *      2. compaction copies the retired rows of each shard to a new segment and then deletes them.
+ * If compaction stops between writing a segment and deleting the rows, the next compaction archives the rows again
+ * and readers keep a single copy of each flight.
+ *
+ * Compaction runs on a background thread every flights.compaction.seconds seconds (default 60) once start is
+ * called. The retention period is flights.retention.days days (default 365; 0 disables it) and segments are written
+ * to flights.archive.dir (default ./h2/archive).
+ */
+public class ArchiveService {
+    FlightService flightService;
+    FlightArchiveDAO flightArchiveDAO;
+    ArchiveSegmentStore segmentStore;
+    Duration retention;
+    private ScheduledExecutorService scheduler;
+
+    public ArchiveService(FlightService flightService){
+        this(flightService, new FlightArchiveDAO(), ArchiveSegmentStore.defaultStore(),
+                Duration.ofDays(Long.getLong("flights.retention.days", 365)));
+    }
+
+    /**
+     * @param retention flights created longer ago are archived. Duration.ZERO archives only retired flights.
+     */
+    public ArchiveService(FlightService flightService, FlightArchiveDAO flightArchiveDAO,
+                          ArchiveSegmentStore segmentStore, Duration retention){
+        this.flightService = flightService;
+        this.flightArchiveDAO = flightArchiveDAO;
+        this.segmentStore = segmentStore;
+        this.retention = retention;
+    }
+
+    /**
+     * Run compaction in the background every flights.compaction.seconds seconds. Calling start again has no effect.
+     */
+    public synchronized void start(){
+        if(scheduler == null){
+            long period = Long.getLong("flights.compaction.seconds", 60);
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "flight-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::compact, period, period, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stop the background compaction.
+     */
+    public synchronized void stop(){
+        if(scheduler != null){
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Retire the flights older than the retention period, then move every retired flight to the archive, writing
+     * one segment per shard that has retired flights.
+     * @return the number of flights moved to the archive, or -1 if compaction failed. Rows of a shard are only
+     *         deleted after their segment is safely on disk.
+     */
+    public int compact(){
+        synchronized (segmentStore) {
+            if(!retention.isZero()){
+                Timestamp cutoff = new Timestamp(System.currentTimeMillis() - retention.toMillis());
+                if(flightService.retireFlightsCreatedBefore(cutoff) < 0){
+                    return -1;
+                }
+            }
+            int archived = 0;
+            for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+                List<Flight> retired = flightArchiveDAO.getRetiredFlights(shard);
+                if(retired == null){
+                    return -1;
+                }
+                if(retired.isEmpty()){
+                    continue;
+                }
+                try {
+                    segmentStore.append(retired);
+                } catch (IOException e) {
+                    System.out.println(e.getMessage());
+                    return -1;
+                }
+                List<Integer> ids = new ArrayList<>(retired.size());
+                for(Flight flight : retired){
+                    ids.add(flight.getFlight_id());
+                }
+                if(!flightArchiveDAO.deleteRetiredFlights(shard, ids)){
+                    return -1;
+                }
+                archived += retired.size();
+            }
+            return archived;
+        }
+    }
+
+    /**
+     * Retrieve every flight, live, retired or archived.
+     * @return all flights in flight_id order.
+     * @throws IOException if the flight table or an archive segment cannot be read.
+     */
+    public List<Flight> getAllFlightsIncludingArchived() throws IOException {
+        List<Flight> live = flightService.getAllFlights();
+        if(live == null){
+            throw new IOException("the live flights could not be read");
+        }
+        return getFlightsIncludingArchived(live, null, null);
+    }
+
+    /**
+     * Retrieve every flight of a route, live, retired or archived. Cities are matched ignoring case.
+     * @return the route's flights in flight_id order.
+     * @throws IOException if an archive segment cannot be read.
+     */
+    public List<Flight> getAllFlightsFromCityToCityIncludingArchived(String departure_city, String arrival_city)
+            throws IOException {
+        return getFlightsIncludingArchived(flightService.getAllFlightsFromCityToCity(departure_city, arrival_city),
+                CityIndex.normalize(departure_city), CityIndex.normalize(arrival_city));
+    }
+
+    /**
+     * Merge live flights with the retired and archived flights matching a route. The tiers are read from hot to
+     * cold: a flight that is retired or archived while this runs is then still found in a colder tier.
+     */
+    private List<Flight> getFlightsIncludingArchived(List<Flight> live, String departure_key, String arrival_key)
+            throws IOException {
+        Map<Integer, Flight> flights = new TreeMap<>();
+        for(Flight flight : live){
+            flights.put(flight.getFlight_id(), flight);
+        }
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            List<Flight> retired = flightArchiveDAO.getRetiredFlights(shard);
+            if(retired == null){
+                throw new IOException("the retired flights of shard " + shard + " could not be read");
+            }
+            addMatching(flights, retired, departure_key, arrival_key);
+        }
+        addMatching(flights, segmentStore.readAll(), departure_key, arrival_key);
+        return new ArrayList<>(flights.values());
+    }
+
+    private static void addMatching(Map<Integer, Flight> flights, List<Flight> candidates, String departure_key,
+                                    String arrival_key){
+        for(Flight flight : candidates){
+            String departure = CityIndex.normalize(flight.getDeparture_city());
+            String arrival = CityIndex.normalize(flight.getArrival_city());
+            if((departure_key == null || departure_key.equals(departure))
+                    && (arrival_key == null || arrival_key.equals(arrival))){
+                flights.putIfAbsent(flight.getFlight_id(), flight);
+            }
+        }
+    }
+}
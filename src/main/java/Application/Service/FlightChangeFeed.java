@@ -0,0 +1,395 @@
+package Application.Service;
+
+import Application.Model.Flight;
+import Application.Model.FlightChange;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The FlightChangeFeed fans out flight inserts and updates to any number of subscribers, such as the clients of the
+ * GET /flights/changes Server-Sent Events endpoint.
+ *
+ * Changes are numbered with a sequence that starts at 1 and are kept in a ring buffer holding the most recent
+ * changes. Every subscriber only has a cursor into the ring: the sequence number of the next change it will receive.
+ * Publishing writes the change into the ring and wakes up the dispatchers, so its cost does not depend on the number
+ * of subscribers, and it never waits on one. A small shared pool of dispatcher threads then delivers the changes
+ * from the ring to every subscriber that is behind, at most one thread per subscriber at a time.
+ *
+ * A subscriber that falls behind by more than the ring capacity finds its next change overwritten, and is handled
+ * according to the SlowConsumerPolicy: either it is disconnected, or it is told about the gap and continues with
+ * the oldest change held. A subscriber whose write to its client takes longer than the write timeout is always
+ * disconnected, so that a client that stopped reading cannot hold on to a dispatcher thread.
+ *
+ * A subscriber can resume after a change it has already seen (eg the Last-Event-ID header of a reconnecting client).
+ * The changes after it are taken from the ring, and if the ring no longer holds some of them the subscriber is told
+ * about the gap. Sequence numbers start over whenever the server restarts, so event ids carry a random id of the feed
+ * that issued them (see eventId), and a subscriber resuming from an id of another feed is told to reset. When the
+ * flights are replaced all at once, every subscriber is told to reset too (see publishReset).
+ */
+public class FlightChangeFeed {
+
+    public enum SlowConsumerPolicy {
+        /** tell the subscriber about the changes it missed and continue with the oldest change held */
+        DROP,
+        /** close the subscriber, it can reconnect and resume from the ring */
+        DISCONNECT
+    }
+
+    /**
+     * The receiving end of a subscription. Methods are never called concurrently for the same sink, but they are
+     * called from dispatcher threads, so a sink may block while writing to a slow client. close may be called from
+     * any thread, also while another method is blocked, and should make that method return.
+     */
+    public interface Sink {
+        void send(FlightChange change) throws Exception;
+
+        /**
+         * Called when changes firstMissed..lastMissed (inclusive) can no longer be delivered.
+         */
+        void gap(long firstMissed, long lastMissed) throws Exception;
+
+        /**
+         * Called first when the subscriber resumed from an event id that this feed did not issue, eg one from before
+         * the server restarted, and in sequence order for every reset published (see publishReset). The subscriber
+         * should reload the flights, and continues after resumeAfter.
+         */
+        void reset(long resumeAfter) throws Exception;
+
+        /**
+         * Called periodically while the feed is idle, so that broken connections are noticed.
+         */
+        void keepAlive() throws Exception;
+
+        void close();
+    }
+
+    /**
+     * A registered subscriber and its position in the feed.
+     */
+    public class Subscription {
+        private final Sink sink;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile boolean resetPending;
+        //changes a resuming subscriber asked for that the ring no longer held when it subscribed, or 0 if none
+        private volatile long missedFirst;
+        private long missedLast;
+        //System.nanoTime() when the write in progress started, or 0 when the sink is not being written to
+        private volatile long writingSince;
+        private volatile boolean closed;
+
+        private Subscription(Sink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * @return the sequence number of the next change this subscriber will receive.
+         */
+        public long getCursor() {
+            return cursor;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        private boolean hasWork() {
+            return cursor <= lastSequence || resetPending || missedFirst != 0;
+        }
+    }
+
+    private static final int MAX_CHANGES_PER_DRAIN = 256;
+
+    private final String id = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicReferenceArray<FlightChange> ring;
+    private final int mask;
+    private final SlowConsumerPolicy policy;
+    private final long writeTimeoutNanos;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService dispatchers;
+    private final AtomicBoolean watchdogStarted = new AtomicBoolean();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private volatile long lastSequence = 0;
+
+    /**
+     * A feed holding the last 4096 changes, disconnecting subscribers that fall further behind or take more than
+     * 10 seconds to write a change.
+     */
+    public FlightChangeFeed(){
+        this(4096, SlowConsumerPolicy.DISCONNECT, 4, Duration.ofSeconds(10));
+    }
+
+    /**
+     * A feed with a write timeout of 10 seconds.
+     */
+    public FlightChangeFeed(int capacity, SlowConsumerPolicy policy, int dispatcherThreads){
+        this(capacity, policy, dispatcherThreads, Duration.ofSeconds(10));
+    }
+
+    /**
+     * @param capacity the number of changes held in the ring, rounded up to a power of two.
+     * @param policy what to do with a subscriber that falls behind by more than the capacity.
+     * @param dispatcherThreads the number of threads delivering changes to subscribers.
+     * @param writeTimeout a subscriber whose sink takes longer than this to return is disconnected.
+     */
+    public FlightChangeFeed(int capacity, SlowConsumerPolicy policy, int dispatcherThreads, Duration writeTimeout){
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.policy = policy;
+        this.writeTimeoutNanos = writeTimeout.toNanos();
+        this.dispatchers = Executors.newFixedThreadPool(dispatcherThreads, runnable -> {
+            Thread thread = new Thread(runnable, "flight-change-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Record a change and wake up the dispatchers.
+     * @param type FlightChange.INSERT or FlightChange.UPDATE.
+     * @param flight the flight as persisted by the change.
+     * @return the published change, including its sequence number.
+     */
+    public FlightChange publish(String type, Flight flight){
+        FlightChange change;
+        synchronized (ring) {
+            long sequence = lastSequence + 1;
+            change = new FlightChange(sequence, type, flight);
+            //written before lastSequence, so a dispatcher that sees the sequence also sees the change
+            ring.set((int) (sequence & mask), change);
+            lastSequence = sequence;
+        }
+        //changes published while a wake-up is pending are picked up by it
+        if(wakeUpPending.compareAndSet(false, true)){
+            dispatchers.execute(this::wakeUpSubscribers);
+        }
+        return change;
+    }
+
+    /**
+     * Tell every subscriber to reload the flights, because they were changed in a way the feed cannot describe (eg
+     * the table was replaced by a snapshot). The reset takes a sequence number like a change, so subscribers receive
+     * it after the changes published before it, and a subscriber resuming from before it receives it too.
+     * @return the sequence number of the reset.
+     */
+    public long publishReset(){
+        return publish(FlightChange.RESET, null).getSequence();
+    }
+
+    /**
+     * @return the sequence number of the most recent change, or 0 if nothing was published yet.
+     */
+    public long getLastSequence(){
+        return lastSequence;
+    }
+
+    /**
+     * @param sequence the sequence number of a change of this feed.
+     * @return the event id sent to clients for the change, which subscribe(String, Sink) resumes after.
+     */
+    public String eventId(long sequence){
+        return id + "-" + sequence;
+    }
+
+    /**
+     * @return the number of open subscriptions.
+     */
+    public int getSubscriberCount(){
+        return subscriptions.size();
+    }
+
+    /**
+     * Register a subscriber.
+     * @param lastSeenSequence the sequence number of the last change the subscriber has already seen, to resume
+     *                         after it, or a negative number to only receive changes published from now on. A
+     *                         sequence number this feed has not reached yet is answered with a reset.
+     * @param sink where changes are delivered.
+     * @return the subscription, to be passed to unsubscribe once the subscriber goes away.
+     */
+    public Subscription subscribe(long lastSeenSequence, Sink sink){
+        return subscribe(lastSeenSequence, false, sink);
+    }
+
+    /**
+     * Register a subscriber resuming after an event id.
+     * @param lastEventId an id returned by eventId, or null to only receive changes published from now on. An id
+     *                    this feed did not issue is answered with a reset.
+     * @param sink where changes are delivered.
+     * @return the subscription, to be passed to unsubscribe once the subscriber goes away.
+     */
+    public Subscription subscribe(String lastEventId, Sink sink){
+        if(lastEventId == null){
+            return subscribe(-1, false, sink);
+        }
+        String prefix = id + "-";
+        if(lastEventId.startsWith(prefix)){
+            try {
+                long lastSeen = Long.parseLong(lastEventId.substring(prefix.length()));
+                if(lastSeen >= 0){
+                    return subscribe(lastSeen, false, sink);
+                }
+            } catch (NumberFormatException e) {
+                //answered with a reset below
+            }
+        }
+        return subscribe(-1, true, sink);
+    }
+
+    private Subscription subscribe(long lastSeenSequence, boolean reset, Sink sink){
+        Subscription subscription = new Subscription(sink);
+        synchronized (ring) {
+            long oldest = Math.max(1, lastSequence - mask);
+            if(lastSeenSequence > lastSequence || reset){
+                subscription.resetPending = true;
+                subscription.cursor = lastSequence + 1;
+            }else if(lastSeenSequence < 0){
+                subscription.cursor = lastSequence + 1;
+            }else if(lastSeenSequence + 1 < oldest){
+                //told about the gap first, then it continues with the oldest change held
+                subscription.missedFirst = lastSeenSequence + 1;
+                subscription.missedLast = oldest - 1;
+                subscription.cursor = oldest;
+            }else{
+                subscription.cursor = lastSeenSequence + 1;
+            }
+            subscriptions.add(subscription);
+        }
+        startWatchdog();
+        schedule(subscription);
+        return subscription;
+    }
+
+    /**
+     * Remove a subscriber. Changes that are still being delivered to it are abandoned.
+     */
+    public void unsubscribe(Subscription subscription){
+        subscription.closed = true;
+        subscriptions.remove(subscription);
+    }
+
+    /**
+     * Start the thread sending keep-alives to idle subscribers and disconnecting subscribers stuck in a write.
+     */
+    private void startWatchdog(){
+        if(watchdogStarted.compareAndSet(false, true)){
+            ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "flight-change-keepalive");
+                thread.setDaemon(true);
+                return thread;
+            });
+            watchdog.scheduleAtFixedRate(this::keepAliveIdleSubscribers, 15, 15, TimeUnit.SECONDS);
+            long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), writeTimeoutNanos / 4);
+            watchdog.scheduleAtFixedRate(this::closeStuckSubscribers, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void wakeUpSubscribers(){
+        wakeUpPending.set(false);
+        for(Subscription subscription : subscriptions){
+            schedule(subscription);
+        }
+    }
+
+    private void schedule(Subscription subscription){
+        if(subscription.hasWork() && !subscription.closed && subscription.scheduled.compareAndSet(false, true)){
+            dispatchers.execute(() -> drain(subscription));
+        }
+    }
+
+    /**
+     * Deliver up to MAX_CHANGES_PER_DRAIN changes from the ring to a subscriber, then yield the dispatcher thread so
+     * that one busy subscriber cannot starve the others.
+     */
+    private void drain(Subscription subscription){
+        try {
+            if(subscription.resetPending){
+                subscription.resetPending = false;
+                subscription.writingSince = System.nanoTime();
+                subscription.sink.reset(subscription.cursor - 1);
+            }
+            if(subscription.missedFirst != 0){
+                subscription.writingSince = System.nanoTime();
+                subscription.sink.gap(subscription.missedFirst, subscription.missedLast);
+                subscription.missedFirst = 0;
+            }
+            for(int delivered = 0; delivered < MAX_CHANGES_PER_DRAIN && !subscription.closed; delivered++){
+                long sequence = subscription.cursor;
+                if(sequence > lastSequence){
+                    break;
+                }
+                FlightChange change = ring.get((int) (sequence & mask));
+                subscription.writingSince = System.nanoTime();
+                if(change.getSequence() != sequence){
+                    //overwritten by a change published a full ring later
+                    if(policy == SlowConsumerPolicy.DISCONNECT){
+                        close(subscription);
+                        return;
+                    }
+                    long oldest = Math.max(sequence + 1, lastSequence - mask);
+                    subscription.sink.gap(sequence, oldest - 1);
+                    subscription.cursor = oldest;
+                    continue;
+                }
+                if(FlightChange.RESET.equals(change.getType())){
+                    subscription.sink.reset(sequence);
+                }else{
+                    subscription.sink.send(change);
+                }
+                subscription.cursor = sequence + 1;
+            }
+        } catch (Exception e) {
+            close(subscription);
+            return;
+        } finally {
+            subscription.writingSince = 0;
+            subscription.scheduled.set(false);
+        }
+        schedule(subscription);
+    }
+
+    private void close(Subscription subscription){
+        if(subscriptions.remove(subscription)){
+            subscription.closed = true;
+            subscription.sink.close();
+        }
+    }
+
+    private void closeStuckSubscribers(){
+        long now = System.nanoTime();
+        for(Subscription subscription : subscriptions){
+            long since = subscription.writingSince;
+            if(since != 0 && now - since > writeTimeoutNanos){
+                close(subscription);
+            }
+        }
+    }
+
+    private void keepAliveIdleSubscribers(){
+        for(Subscription subscription : subscriptions){
+            if(subscription.scheduled.compareAndSet(false, true)){
+                dispatchers.execute(() -> {
+                    try {
+                        subscription.writingSince = System.nanoTime();
+                        subscription.sink.keepAlive();
+                    } catch (Exception e) {
+                        close(subscription);
+                    } finally {
+                        subscription.writingSince = 0;
+                        subscription.scheduled.set(false);
+                    }
+                    schedule(subscription);
+                });
+            }
+        }
+    }
+}
@@ -1,9 +1,26 @@
 package Application.Service;
 
 import Application.Model.Flight;
+import Application.DAO.FlightArchiveDAO;
 import Application.DAO.FlightDAO;
+import Application.Model.FlightChange;
+import Application.Model.FlightPatch;
+import Application.Model.FlightPatchResult;
+import Application.Util.CityIndex;
 
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 /**
  * The purpose of a Service class is to contain "business logic" that sits between the web layer (controller) and
@@ -14,9 +31,30 @@ import java.util.List;
  * It's perfectly normal to have Service methods that only contain a single line that calls a DAO method. An
  * application that follows best practices will often have unnecessary code, but this makes the code more
  * readable and maintainable in the long run!
+ *
+ * The API calls a FlightService from many threads at once. Updates read a flight, write it and read it again, and
+ * the statistics, the city index and the change feed are updated from what was read, so two updates of the same
+ * flight must not interleave. Every change of existing flights therefore holds the locks of those flights (one of
+ * LOCK_STRIPES locks, chosen by flight ID), and set-based changes, which cannot know their flights in advance, hold
+ * the write lock of the whole table instead. Inserts hold the read lock of the table, so a set-based change never
+ * runs between an insert and the update of the counters it makes. Reads take no lock.
  */
 public class FlightService {
+    private static final int LOCK_STRIPES = 64;
+
     FlightDAO flightDAO;
+    FlightArchiveDAO flightArchiveDAO;
+    FlightChangeFeed changeFeed;
+    RouteStatistics routeStatistics;
+    CityIndex cityIndex;
+    private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final Lock[] flightLocks = new Lock[LOCK_STRIPES];
+
+    {
+        for(int i = 0; i < LOCK_STRIPES; i++){
+            flightLocks[i] = new ReentrantLock();
+        }
+    }
 
     /**
      * No-args constructor for a flightService instantiates a plain flightDAO.
@@ -24,6 +62,11 @@ public class FlightService {
      */
     public FlightService(){
         flightDAO = new FlightDAO();
+        flightArchiveDAO = new FlightArchiveDAO();
+        changeFeed = new FlightChangeFeed();
+        routeStatistics = new RouteStatistics();
+        cityIndex = new CityIndex();
+        reloadIndexes();
     }
 
     /**
@@ -35,6 +78,48 @@ public class FlightService {
      */
     public FlightService(FlightDAO flightDAO){
         this.flightDAO = flightDAO;
+        this.flightArchiveDAO = new FlightArchiveDAO();
+        this.changeFeed = new FlightChangeFeed();
+        this.routeStatistics = new RouteStatistics();
+        this.cityIndex = new CityIndex();
+        reloadIndexes();
+    }
+
+    /**
+     * @return the feed on which every successful insert and update made through this service is published.
+     */
+    public FlightChangeFeed getChangeFeed(){
+        return changeFeed;
+    }
+
+    /**
+     * @return the route counters, kept up to date by every insert and update made through this service.
+     */
+    public RouteStatistics getRouteStatistics(){
+        return routeStatistics;
+    }
+
+    /**
+     * @return the index of city names used for autocomplete, kept up to date by every insert and update made
+     *         through this service.
+     */
+    public CityIndex getCityIndex(){
+        return cityIndex;
+    }
+
+    /**
+     * Rebuild the route statistics and the city index from the flight table. This is done once when the service is
+     * created, and only needs to be repeated when the table was changed without going through this service (eg by
+     * loading a snapshot).
+     */
+    public void reloadIndexes(){
+        List<Flight> flights = flightDAO.getAllFlights();
+        if(flights == null){
+            //keep the current counters rather than replacing them with those of part of the table
+            return;
+        }
+        routeStatistics.rebuild(flights);
+        cityIndex.rebuild(flights);
     }
 
     /**
@@ -50,10 +135,22 @@ public class FlightService {
      *
      * @param flight an object representing a new Flight.
      * @return the newly added flight if the add operation was successful, including the flight_id. We do this to
-     *         inform our provide the front-end client with information about the added Flight.
+     *         inform our provide the front-end client with information about the added Flight. Returns null without
+     *         touching the database if a city is missing or blank.
      */
     public Flight addFlight(Flight flight){
-        return flightDAO.insertFlight(flight);
+        if(!hasCities(flight)){
+            return null;
+        }
+        return withFlightsLocked(List.of(), () -> {
+            Flight addedFlight = flightDAO.insertFlight(flight);
+            if(addedFlight != null){
+                routeStatistics.flightAdded(addedFlight);
+                cityIndex.flightAdded(addedFlight);
+                changeFeed.publish(FlightChange.INSERT, addedFlight);
+            }
+            return addedFlight;
+        });
     }
 
     /**
@@ -67,22 +164,255 @@ public class FlightService {
      *         the flight object does not contain a flight ID.
      * @return the newly updated flight if the update operation was successful. Return null if the update operation was
      *         unsuccessful. We do this to inform our application about successful/unsuccessful operations. (eg, the
-     *         user should have some insight if they attempted to edit a nonexistent flight.)
+     *         user should have some insight if they attempted to edit a nonexistent flight.) Also returns null if a
+     *         city of the new values is missing or blank.
      */
     public Flight updateFlight(int flight_id, Flight flight){
-
-        if (flightDAO.getFlightById(flight_id) != null) {
+        if(!hasCities(flight)){
+            return null;
+        }
+        return withFlightsLocked(List.of(flight_id), () -> {
+            Flight existingFlight = flightDAO.getFlightById(flight_id);
+            if (existingFlight == null) {
+                return null;
+            }
             flightDAO.updateFlight(flight_id, flight);
+
+            Flight updatedFlight = flightDAO.getFlightById(flight_id);
+            if(updatedFlight != null){
+                flightChanged(existingFlight, updatedFlight);
+            }
+            return updatedFlight;
+        });
+    }
+
+    /**
+     * @return true if the flight has a departure and an arrival city that are not blank.
+     */
+    private static boolean hasCities(Flight flight){
+        return flight.getDeparture_city() != null && !flight.getDeparture_city().isBlank()
+                && flight.getArrival_city() != null && !flight.getArrival_city().isBlank();
+    }
+
+    /**
+     * @return true if the patch sets a city to a blank value, which POST and PUT reject too.
+     */
+    private static boolean setsBlankCity(FlightPatch patch){
+        return patch.getDeparture_city() != null && patch.getDeparture_city().isBlank()
+                || patch.getArrival_city() != null && patch.getArrival_city().isBlank();
+    }
+
+    /**
+     * Change only some fields of a flight.
+     * @param flight_id the ID of the flight to be modified.
+     * @param patch the fields to change. Null fields keep their current value.
+     * @return the updated flight, or null if no flight has the ID, the patch sets a blank city or the update failed.
+     */
+    public Flight patchFlight(int flight_id, FlightPatch patch){
+        FlightPatchResult result = patchFlights(List.of(patch.withFlight_id(flight_id))).get(0);
+        return result.getFlight();
+    }
+
+    /**
+     * Change many flights at once. All the flights are read with one query and written with one batched transaction
+     * per shard (see FlightDAO.patchFlights), instead of the three statements per flight updateFlight needs.
+     * Several patches of the same flight are combined, in order, into one change.
+     *
+     * @param patches the changes, each naming the flight it applies to with its flight_id.
+     * @return one outcome per distinct flight ID, in the order the IDs first appear, and one "invalid" outcome per
+     *         patch without a flight_id or setting a blank city. Invalid patches are not applied, but the valid
+     *         patches of the same flight are.
+     */
+    public List<FlightPatchResult> patchFlights(List<FlightPatch> patches){
+        Map<Integer, FlightPatch> combined = new LinkedHashMap<>();
+        List<FlightPatchResult> invalid = new ArrayList<>();
+        for(FlightPatch patch : patches){
+            if(patch == null || patch.getFlight_id() == null){
+                invalid.add(new FlightPatchResult(null, FlightPatchResult.INVALID, null));
+            }else if(setsBlankCity(patch)){
+                invalid.add(new FlightPatchResult(patch.getFlight_id(), FlightPatchResult.INVALID, null));
+            }else{
+                combined.merge(patch.getFlight_id(), patch, FlightPatch::then);
+            }
         }
 
-        return flightDAO.getFlightById(flight_id);
+        List<FlightPatchResult> results = withFlightsLocked(combined.keySet(), () -> {
+            Map<Integer, Flight> existing = flightDAO.getFlightsByIds(combined.keySet());
+            List<FlightPatch> found = new ArrayList<>();
+            for(FlightPatch patch : combined.values()){
+                if(existing.containsKey(patch.getFlight_id())){
+                    found.add(patch);
+                }
+            }
+            Set<Integer> written = found.isEmpty() ? Set.of() : flightDAO.patchFlights(existing, found);
+
+            List<FlightPatchResult> outcomes = new ArrayList<>();
+            for(FlightPatch patch : combined.values()){
+                Flight before = existing.get(patch.getFlight_id());
+                if(before == null){
+                    outcomes.add(new FlightPatchResult(patch.getFlight_id(), FlightPatchResult.NOT_FOUND, null));
+                }else if(written.contains(patch.getFlight_id())){
+                    Flight after = patch.applyTo(before);
+                    flightChanged(before, after);
+                    outcomes.add(new FlightPatchResult(patch.getFlight_id(), FlightPatchResult.UPDATED, after));
+                }else{
+                    outcomes.add(new FlightPatchResult(patch.getFlight_id(), FlightPatchResult.FAILED, null));
+                }
+            }
+            return outcomes;
+        });
+        results.addAll(invalid);
+        return results;
+    }
+
+    /**
+     * Change every flight matching a predicate with one set-based UPDATE per shard.
+     * @param where the cities selecting the flights, matched ignoring case. A null city matches any city, but at
+     *              least one must be given.
+     * @param set the fields to change on every selected flight.
+     * @return one "updated" outcome per changed flight, in flight_id order within each shard, followed by one
+     *         "failed" outcome without a flight_id if a shard failed (the flights of the other shards are changed
+     *         all the same), a single "invalid" outcome without a flight_id if set has a blank city (nothing is
+     *         changed), or null if the predicate names no city.
+     */
+    public List<FlightPatchResult> patchFlightsWhere(FlightPatch where, FlightPatch set){
+        if(where.getDeparture_city() == null && where.getArrival_city() == null){
+            return null;
+        }
+        if(setsBlankCity(set)){
+            return List.of(new FlightPatchResult(null, FlightPatchResult.INVALID, null));
+        }
+        return withAllFlightsLocked(() -> {
+            List<Flight> changed = new ArrayList<>();
+            boolean committed = flightDAO.patchFlightsWhere(where, set, changed);
+            //the shards that committed before a failure stay changed, so they are accounted for either way
+            List<FlightPatchResult> results = new ArrayList<>();
+            for(Flight before : changed){
+                Flight after = set.applyTo(before);
+                flightChanged(before, after);
+                results.add(new FlightPatchResult(before.getFlight_id(), FlightPatchResult.UPDATED, after));
+            }
+            if(!committed){
+                results.add(new FlightPatchResult(null, FlightPatchResult.FAILED, null));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Replace the live flights with those of a snapshot while no other change runs through this service, then
+     * rebuild the statistics and the city index from the new table and publish a reset on the change feed, so that
+     * subscribers reload the flights.
+     * @param snapshotService the service loading the snapshot.
+     * @param flights the flights of the snapshot, as read by SnapshotService.readSnapshot.
+     * @return the number of flights loaded, or -1 if the table could not be replaced in every shard. The indexes are
+     *         rebuilt and the reset is published either way, in case some shards were replaced.
+     */
+    public int replaceAllFlights(SnapshotService snapshotService, List<Flight> flights){
+        return withAllFlightsLocked(() -> {
+            int loaded = snapshotService.loadSnapshot(flights);
+            reloadIndexes();
+            changeFeed.publishReset();
+            return loaded;
+        });
+    }
+
+    /**
+     * Retire a flight: it disappears from every live query and is moved to the archive by the next compaction
+     * (see ArchiveService).
+     * @param flight_id the ID of the flight to retire.
+     * @return the retired flight, or null if no live flight has the ID.
+     */
+    public Flight retireFlight(int flight_id){
+        return withFlightsLocked(List.of(flight_id), () -> {
+            Flight retiredFlight = flightArchiveDAO.retireFlight(flight_id);
+            if(retiredFlight != null){
+                flightRetired(retiredFlight);
+            }
+            return retiredFlight;
+        });
+    }
+
+    /**
+     * Retire every live flight created before a cutoff.
+     * @param cutoff flights created earlier are retired.
+     * @return the number of flights retired, or -1 if it failed.
+     */
+    public int retireFlightsCreatedBefore(Timestamp cutoff){
+        return withAllFlightsLocked(() -> {
+            List<Flight> retiredFlights = flightArchiveDAO.retireFlightsCreatedBefore(cutoff);
+            if(retiredFlights == null){
+                return -1;
+            }
+            for(Flight retiredFlight : retiredFlights){
+                flightRetired(retiredFlight);
+            }
+            return retiredFlights.size();
+        });
+    }
+
+    /**
+     * Run a change of some flights while no other change of those flights, and no set-based change, runs through
+     * this service. The stripes are locked in ascending order, so two callers can never wait for each other.
+     * @param flight_ids the IDs of the flights the action may change. An insert passes none, since no other change
+     *                   can name the flight it creates.
+     */
+    private <T> T withFlightsLocked(Collection<Integer> flight_ids, Supplier<T> action){
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for(int flight_id : flight_ids){
+            stripes.add(Math.floorMod(flight_id, LOCK_STRIPES));
+        }
+        tableLock.readLock().lock();
+        List<Lock> locked = new ArrayList<>();
+        try {
+            for(int stripe : stripes){
+                flightLocks[stripe].lock();
+                locked.add(flightLocks[stripe]);
+            }
+            return action.get();
+        } finally {
+            for(Lock lock : locked){
+                lock.unlock();
+            }
+            tableLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run a change that may touch any flight while no other change runs through this service.
+     */
+    private <T> T withAllFlightsLocked(Supplier<T> action){
+        tableLock.writeLock().lock();
+        try {
+            return action.get();
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a retired flight from the statistics and the city index, and publish its retirement.
+     */
+    private void flightRetired(Flight flight){
+        routeStatistics.flightRemoved(flight);
+        cityIndex.flightRemoved(flight);
+        changeFeed.publish(FlightChange.RETIRE, flight);
+    }
+
+    /**
+     * Bring the statistics, the city index and the change feed up to date with an update.
+     */
+    private void flightChanged(Flight before, Flight after){
+        routeStatistics.flightUpdated(before, after);
+        cityIndex.flightUpdated(before, after);
+        changeFeed.publish(FlightChange.UPDATE, after);
     }
 
     /**
      * TODO: Use the FlightDAO to retrieve a List containing all flights.
      * You could use the flightDAO.getAllFlights method.
      *
-     * @return all flights in the database.
+     * @return all flights in the database, or null if they could not all be read.
      */
     public List<Flight> getAllFlights() {
         return flightDAO.getAllFlights();
@@ -99,4 +429,18 @@ public class FlightService {
     public List<Flight> getAllFlightsFromCityToCity(String departure_city, String arrival_city) {
         return flightDAO.getAllFlightsFromCityToCity(departure_city, arrival_city);
     }
+
+    /**
+     * Retrieve the flights leaving a city within a time window, eg the next two hours out of Tampa.
+     * @param departure_city the departing city of the flight.
+     * @param from the start of the window, inclusive.
+     * @param to the end of the window, exclusive.
+     * @return the flights departing in the window in departure order, or null if the window is empty or reversed.
+     */
+    public List<Flight> getFlightsDepartingBetween(String departure_city, Instant from, Instant to) {
+        if(!from.isBefore(to)){
+            return null;
+        }
+        return flightDAO.getFlightsDepartingBetween(departure_city, from, to);
+    }
 }
@@ -0,0 +1,192 @@
+package Application.Service;
+
+import Application.Model.Flight;
+import Application.Model.RouteCount;
+import Application.Util.CityIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * RouteStatistics keeps live flight counts per departure city, per arrival city and per route, so that questions
+ * such as "how many departures from tampa" or "which routes have the most flights" are answered without scanning
+ * the flight table.
+ *
+ * The counters are built once from the existing flights and then maintained incrementally by the FlightService on
+ * every insert and update; an update that changes a route moves one flight from the old counters to the new ones.
+ * Each group of counters is also kept ordered by count, so the top K entries are read in O(K) and a counter
+ * changes in O(log n). Cities are counted by their normalized name (see CityIndex.normalize), so "Tampa" and
+ * "tampa" share a counter.
+ */
+public class RouteStatistics {
+
+    /**
+     * Counters keyed by K, kept both in a hash map for lookups and in a tree ordered by descending count for
+     * top-K queries.
+     */
+    private static class RankedCounter<K extends Comparable<K>> {
+        private final Map<K, Long> counts = new HashMap<>();
+        private final TreeSet<Map.Entry<K, Long>> ranking = new TreeSet<>(
+                Comparator.<Map.Entry<K, Long>>comparingLong(Map.Entry::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey));
+
+        long get(K key) {
+            return counts.getOrDefault(key, 0L);
+        }
+
+        void add(K key, long delta) {
+            long previous = get(key);
+            long updated = previous + delta;
+            if (previous != 0) {
+                ranking.remove(Map.entry(key, previous));
+            }
+            if (updated > 0) {
+                counts.put(key, updated);
+                ranking.add(Map.entry(key, updated));
+            } else {
+                counts.remove(key);
+            }
+        }
+
+        List<Map.Entry<K, Long>> top(int k) {
+            List<Map.Entry<K, Long>> top = new ArrayList<>(Math.min(k, ranking.size()));
+            Iterator<Map.Entry<K, Long>> iterator = ranking.iterator();
+            while (iterator.hasNext() && top.size() < k) {
+                top.add(iterator.next());
+            }
+            return top;
+        }
+
+        void clear() {
+            counts.clear();
+            ranking.clear();
+        }
+    }
+
+    /**
+     * A departure and arrival city pair, usable as a counter key.
+     */
+    private static class Route implements Comparable<Route> {
+        final String departure_city;
+        final String arrival_city;
+
+        Route(String departure_city, String arrival_city) {
+            this.departure_city = departure_city;
+            this.arrival_city = arrival_city;
+        }
+
+        @Override
+        public int compareTo(Route o) {
+            int byDeparture = departure_city.compareTo(o.departure_city);
+            return byDeparture != 0 ? byDeparture : arrival_city.compareTo(o.arrival_city);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Route route = (Route) o;
+            return departure_city.equals(route.departure_city) && arrival_city.equals(route.arrival_city);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * departure_city.hashCode() + arrival_city.hashCode();
+        }
+    }
+
+    private final RankedCounter<String> departures = new RankedCounter<>();
+    private final RankedCounter<String> arrivals = new RankedCounter<>();
+    private final RankedCounter<Route> routes = new RankedCounter<>();
+
+    /**
+     * Throw away every counter and count the given flights instead.
+     * @param flights every flight in the database.
+     */
+    public synchronized void rebuild(List<Flight> flights){
+        departures.clear();
+        arrivals.clear();
+        routes.clear();
+        for(Flight flight : flights){
+            count(flight, 1);
+        }
+    }
+
+    /**
+     * Count a newly inserted flight.
+     */
+    public synchronized void flightAdded(Flight flight){
+        count(flight, 1);
+    }
+
+    /**
+     * Move a flight from the counters of its old route to the counters of its new route.
+     * @param before the flight as it was before the update.
+     * @param after the flight as it is after the update.
+     */
+    public synchronized void flightUpdated(Flight before, Flight after){
+        count(before, -1);
+        count(after, 1);
+    }
+
+    /**
+     * Stop counting a flight that was retired.
+     */
+    public synchronized void flightRemoved(Flight flight){
+        count(flight, -1);
+    }
+
+    private void count(Flight flight, long delta){
+        String departure = CityIndex.normalize(flight.getDeparture_city());
+        String arrival = CityIndex.normalize(flight.getArrival_city());
+        if(departure == null || arrival == null){
+            return;
+        }
+        departures.add(departure, delta);
+        arrivals.add(arrival, delta);
+        routes.add(new Route(departure, arrival), delta);
+    }
+
+    public synchronized long getDepartureCount(String city){
+        return departures.get(CityIndex.normalize(city));
+    }
+
+    public synchronized long getArrivalCount(String city){
+        return arrivals.get(CityIndex.normalize(city));
+    }
+
+    public synchronized RouteCount getRouteCount(String departure_city, String arrival_city){
+        Route route = new Route(CityIndex.normalize(departure_city), CityIndex.normalize(arrival_city));
+        return new RouteCount(route.departure_city, route.arrival_city, routes.get(route));
+    }
+
+    /**
+     * @param k the number of routes to return.
+     * @return the k routes with the most flights, busiest first. Ties are ordered by city name.
+     */
+    public synchronized List<RouteCount> getTopRoutes(int k){
+        List<RouteCount> top = new ArrayList<>();
+        for(Map.Entry<Route, Long> entry : routes.top(k)){
+            top.add(new RouteCount(entry.getKey().departure_city, entry.getKey().arrival_city, entry.getValue()));
+        }
+        return top;
+    }
+
+    /**
+     * @param k the number of cities to return.
+     * @return the k cities with the most departures, busiest first, as city name to number of departures.
+     */
+    public synchronized Map<String, Long> getTopDepartureCities(int k){
+        Map<String, Long> top = new LinkedHashMap<>();
+        for(Map.Entry<String, Long> entry : departures.top(k)){
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+}
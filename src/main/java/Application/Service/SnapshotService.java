@@ -0,0 +1,95 @@
+package Application.Service;
+
+import Application.DAO.FlightDAO;
+import Application.DAO.FlightImportDAO;
+import Application.Model.Flight;
+import Application.Util.ArchiveSegmentStore;
+import Application.Util.FlightSnapshot;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * The SnapshotService exports the flight table as a binary snapshot (see FlightSnapshot for the format) and
+ * rebuilds the table from one. It is used by both the /snapshot endpoints and the SnapshotTool command line.
+ */
+public class SnapshotService {
+    FlightDAO flightDAO;
+    FlightImportDAO flightImportDAO;
+    ArchiveSegmentStore segmentStore;
+
+    public SnapshotService(){
+        this(new FlightDAO(), new FlightImportDAO(), ArchiveSegmentStore.defaultStore());
+    }
+
+    /**
+     * @param segmentStore the archive of the flight table, whose flight IDs new flights must not reuse.
+     */
+    public SnapshotService(FlightDAO flightDAO, FlightImportDAO flightImportDAO, ArchiveSegmentStore segmentStore){
+        this.flightDAO = flightDAO;
+        this.flightImportDAO = flightImportDAO;
+        this.segmentStore = segmentStore;
+    }
+
+    /**
+     * Write a snapshot of every flight to a channel.
+     * @param channel the destination, eg a file or an HTTP response. It is not closed.
+     * @return the number of flights written.
+     */
+    public int exportSnapshot(WritableByteChannel channel) throws IOException {
+        List<Flight> flights = flightDAO.getAllFlights();
+        if(flights == null){
+            throw new IOException("the flights could not be read");
+        }
+        FlightSnapshot.write(flights, channel);
+        return flights.size();
+    }
+
+    /**
+     * Replace the live flights with the flights of a snapshot (see readSnapshot and loadSnapshot). While the API is
+     * running, use readSnapshot and FlightService.replaceAllFlights instead, so that the table is not replaced under
+     * the changes the API is making.
+     *
+     * @param channel the source, eg a file or an HTTP request body. It is not closed.
+     * @return the number of flights loaded, or -1 if the table could not be replaced in every shard.
+     * @throws IOException if the snapshot cannot be read or is corrupt.
+     */
+    public int importSnapshot(ReadableByteChannel channel) throws IOException {
+        return loadSnapshot(readSnapshot(channel));
+    }
+
+    /**
+     * Read and verify a complete snapshot, without touching the table, so that a corrupt snapshot leaves the
+     * existing flights in place.
+     * @param channel the source, eg a file or an HTTP request body. It is not closed.
+     * @return the flights of the snapshot.
+     * @throws IOException if the snapshot cannot be read or is corrupt.
+     */
+    public List<Flight> readSnapshot(ReadableByteChannel channel) throws IOException {
+        return FlightSnapshot.read(channel);
+    }
+
+    /**
+     * Replace the live flights with the flights of a snapshot. Retired flights waiting to be archived are kept (see
+     * FlightImportDAO.replaceAllFlights), and flights added afterwards get IDs past those of the archive as well as
+     * those of the snapshot.
+     * @param flights the flights read by readSnapshot.
+     * @return the number of flights loaded, or -1 if the archive could not be read (the table is left as it was) or
+     *         the table could not be replaced in every shard.
+     */
+    public int loadSnapshot(List<Flight> flights){
+        int archivedMaxId;
+        try {
+            archivedMaxId = segmentStore.getMaxFlightId();
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return -1;
+        }
+        if(!flightImportDAO.replaceAllFlights(flights, 5000, archivedMaxId)){
+            return -1;
+        }
+        return flights.size();
+    }
+}
@@ -0,0 +1,123 @@
+package Application;
+
+import Application.Model.Flight;
+import Application.Service.SnapshotService;
+import Application.Util.ConnectionUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line access to flight snapshots, run against the same database as the API:
+ *
+ *      java -cp ... Application.SnapshotTool export flights.snap
+ *      java -cp ... Application.SnapshotTool import flights.snap
+ *      java -cp ... Application.SnapshotTool bench 100000
+ *
+ * bench compares rebuilding a table of the given size by replaying one SQL insert per flight, the way
+ * Application.databaseSetup loads its rows, with writing and loading a snapshot of the same flights. It recreates
+ * the flight table, so only run it against a scratch database.
+ */
+public class SnapshotTool {
+
+    public static void main(String[] args) {
+        if(args.length != 2){
+            System.out.println("usage: SnapshotTool export|import <file> | SnapshotTool bench <rows>");
+            return;
+        }
+        SnapshotService snapshotService = new SnapshotService();
+        try {
+            switch (args[0]) {
+                case "export":
+                    try (FileChannel channel = FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        long started = System.nanoTime();
+                        int flights = snapshotService.exportSnapshot(channel);
+                        System.out.printf("exported %d flights (%d bytes) in %.1f ms%n", flights, channel.size(),
+                                (System.nanoTime() - started) / 1e6);
+                    }
+                    break;
+                case "import":
+                    try (FileChannel channel = FileChannel.open(Paths.get(args[1]), StandardOpenOption.READ)) {
+                        long started = System.nanoTime();
+                        int flights = snapshotService.importSnapshot(channel);
+                        if(flights < 0){
+                            System.out.println("the flights could not be replaced, see the errors above");
+                        }else{
+                            System.out.printf("imported %d flights in %.1f ms%n", flights,
+                                    (System.nanoTime() - started) / 1e6);
+                        }
+                    }
+                    break;
+                case "bench":
+                    bench(Integer.parseInt(args[1]), snapshotService);
+                    break;
+                default:
+                    System.out.println("unknown command " + args[0]);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void bench(int rows, SnapshotService snapshotService) throws IOException {
+        String[] cities = {"tampa", "dallas", "reston", "morgantown", "atlanta", "chicago", "denver", "seattle"};
+        List<Flight> flights = new ArrayList<>(rows);
+        for(int i = 0; i < rows; i++){
+            flights.add(new Flight(cities[i % cities.length], cities[(i * 7 + 3) % cities.length]));
+        }
+
+        long started = System.nanoTime();
+        replaySql(flights);
+        double sqlMillis = (System.nanoTime() - started) / 1e6;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        started = System.nanoTime();
+        snapshotService.exportSnapshot(Channels.newChannel(bytes));
+        double exportMillis = (System.nanoTime() - started) / 1e6;
+
+        started = System.nanoTime();
+        snapshotService.importSnapshot(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        double importMillis = (System.nanoTime() - started) / 1e6;
+
+        System.out.printf("%d flights, snapshot size %d bytes (%.1f bytes/flight)%n", rows, bytes.size(),
+                (double) bytes.size() / Math.max(rows, 1));
+        System.out.printf("sql replay:      %10.1f ms%n", sqlMillis);
+        System.out.printf("snapshot export: %10.1f ms%n", exportMillis);
+        System.out.printf("snapshot load:   %10.1f ms (%.1fx faster than sql replay)%n", importMillis,
+                sqlMillis / Math.max(importMillis, 1e-3));
+    }
+
+    /**
+     * Recreate the flight table and insert every flight with its own statement, like a SQL dump would.
+     */
+    private static void replaySql(List<Flight> flights) {
+        Application.databaseSetup();
+        try {
+            for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+                ConnectionUtil.getConnection(shard).prepareStatement("delete from flight").executeUpdate();
+            }
+            for(Flight flight : flights){
+                int shard = ConnectionUtil.shardForCity(flight.getDeparture_city());
+                Connection conn = ConnectionUtil.getConnection(shard);
+                PreparedStatement ps = conn.prepareStatement("insert into flight " +
+                        "(departure_city, arrival_city) values (?, ?)");
+                ps.setString(1, flight.getDeparture_city());
+                ps.setString(2, flight.getArrival_city());
+                ps.executeUpdate();
+            }
+        }catch(SQLException e){
+            e.printStackTrace();
+        }
+    }
+}
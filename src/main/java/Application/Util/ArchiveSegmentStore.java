@@ -0,0 +1,152 @@
+package Application.Util;
+
+import Application.Model.Flight;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The ArchiveSegmentStore keeps archived flights in a directory of append-only segment files. Every compaction
+ * writes its flights to a new segment; segments are never modified afterwards.
+ *
+ * A segment is a FlightSnapshot compressed with GZIP, named segment-{sequence}.flsn.gz with a zero-padded,
+ * increasing sequence number. It is written to a temporary file, forced to disk and then renamed, so a crash never
+ * leaves a partial segment behind, and the snapshot's CRC32 catches any later corruption.
+ *
+ * Segments are decoded again on every read rather than cached, so archived flights never take heap space while
+ * nobody asks for them.
+ */
+public class ArchiveSegmentStore {
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".flsn.gz";
+
+    private final Path directory;
+    private long nextSequence = -1;
+
+    /**
+     * @param directory the directory holding the segments. It is created when the first segment is written.
+     */
+    public ArchiveSegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the store the API archives to: the directory flights.archive.dir, by default ./h2/archive.
+     */
+    public static ArchiveSegmentStore defaultStore() {
+        return new ArchiveSegmentStore(Paths.get(System.getProperty("flights.archive.dir", "./h2/archive")));
+    }
+
+    /**
+     * Write flights to a new segment.
+     * @param flights the flights to archive.
+     * @return the path of the new segment.
+     */
+    public synchronized Path append(List<Flight> flights) throws IOException {
+        Files.createDirectories(directory);
+        if(nextSequence < 0){
+            nextSequence = 0;
+            for(Path segment : getSegments()){
+                nextSequence = Math.max(nextSequence, sequenceOf(segment) + 1);
+            }
+        }
+        Path segment = directory.resolve(String.format("%s%019d%s", PREFIX, nextSequence, SUFFIX));
+        Path temporary = directory.resolve(segment.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(file), 64 * 1024)) {
+            FlightSnapshot.write(flights, Channels.newChannel(gzip));
+            gzip.finish();
+            file.force(true);
+        }
+        Files.move(temporary, segment, StandardCopyOption.ATOMIC_MOVE);
+        nextSequence++;
+        return segment;
+    }
+
+    /**
+     * @return the paths of every segment, oldest first.
+     */
+    public List<Path> getSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if(!Files.isDirectory(directory)){
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for(Path segment : stream){
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static long sequenceOf(Path segment){
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Read every archived flight. If a flight was archived more than once (a compaction can be interrupted after
+     * writing its segment but before deleting the rows), the copy from the newest segment is returned.
+     * @return the archived flights in flight_id order.
+     * @throws IOException if a segment cannot be read or is corrupt.
+     */
+    public List<Flight> readAll() throws IOException {
+        Map<Integer, Flight> flights = new TreeMap<>();
+        for(Path segment : getSegments()){
+            for(Flight flight : read(segment)){
+                flights.put(flight.getFlight_id(), flight);
+            }
+        }
+        return new ArrayList<>(flights.values());
+    }
+
+    /**
+     * @return the highest flight ID in the archive, or 0 if it is empty. Live flights must get higher IDs, so that
+     *         an archived flight is never mistaken for a live one.
+     * @throws IOException if a segment cannot be read or is corrupt.
+     */
+    public int getMaxFlightId() throws IOException {
+        int max = 0;
+        for(Path segment : getSegments()){
+            List<Flight> flights = read(segment);
+            if(!flights.isEmpty()){
+                //segments are written in flight_id order
+                max = Math.max(max, flights.get(flights.size() - 1).getFlight_id());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Delete every segment, eg when the flight table they were archived from is recreated.
+     */
+    public synchronized void clear() throws IOException {
+        for(Path segment : getSegments()){
+            Files.delete(segment);
+        }
+        nextSequence = -1;
+    }
+
+    private List<Flight> read(Path segment) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment), 64 * 1024)) {
+            return FlightSnapshot.read(Channels.newChannel(in));
+        }
+    }
+}
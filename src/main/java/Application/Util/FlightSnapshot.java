@@ -0,0 +1,318 @@
+package Application.Util;
+
+import Application.Model.Flight;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The FlightSnapshot class writes and reads a compact binary copy of the flight table. A snapshot is much smaller
+ * and much faster to load than replaying SQL inserts, which makes it useful for warming a replica or a test
+ * environment.
+ *
+ * Layout of a snapshot (all integers are unsigned LEB128 varints unless noted):
+ *      magic       4 bytes, "FLSN"
+ *      version     1 byte
+ *      cityCount   followed by cityCount entries of (byteLength, UTF-8 bytes). Every distinct city is stored once.
+ *      flightCount followed by flightCount entries of
+ *                  (zigzag(flight_id - previous flight_id), departure city index, arrival city index,
+ *                   departure time, arrival time)
+ *                  A time is 0 when the flight has none, and otherwise 1 + zigzag(difference in seconds), where a
+ *                  departure time is relative to the previous flight's departure time and an arrival time to the
+ *                  flight's own departure time (0 when it has none), so scheduled flights take a few bytes each.
+ *      checksum    4 bytes, big-endian CRC32 of every byte before it
+ *
+ * Version 1 snapshots, written before flights had times, have no time fields and can still be read.
+ *
+ * Flights are written in flight_id order, so the id deltas are almost always 1 and take a single byte. Writing
+ * streams through a fixed size ByteBuffer. Reading loads the whole snapshot first, which is a fraction of the size of
+ * the flights it decodes to, so the checksum is verified before anything is decoded, and every count, length and
+ * city index is then checked against the bytes that are left. A corrupt snapshot is always reported with an
+ * IOException, never with an out of bounds or out of memory error.
+ */
+public class FlightSnapshot {
+    public static final int VERSION = 2;
+    private static final byte[] MAGIC = {'F', 'L', 'S', 'N'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Write a snapshot of the given flights.
+     * @param flights the flights to write, in any order.
+     * @param channel the channel to write to. It is not closed.
+     */
+    public static void write(List<Flight> flights, WritableByteChannel channel) throws IOException {
+        List<Flight> sorted = new ArrayList<>(flights);
+        sorted.sort(Comparator.comparingInt(Flight::getFlight_id));
+
+        Map<String, Integer> cityIndex = new HashMap<>();
+        List<String> cities = new ArrayList<>();
+        for (Flight flight : sorted) {
+            for (String city : new String[]{flight.getDeparture_city(), flight.getArrival_city()}) {
+                if (!cityIndex.containsKey(city)) {
+                    cityIndex.put(city, cities.size());
+                    cities.add(city);
+                }
+            }
+        }
+
+        Writer out = new Writer(channel);
+        out.put(MAGIC);
+        out.put(new byte[]{VERSION});
+        out.putVarint(cities.size());
+        for (String city : cities) {
+            byte[] bytes = city.getBytes(StandardCharsets.UTF_8);
+            out.putVarint(bytes.length);
+            out.put(bytes);
+        }
+        out.putVarint(sorted.size());
+        long previousId = 0;
+        long previousDeparture = 0;
+        for (Flight flight : sorted) {
+            out.putVarint(zigzag(flight.getFlight_id() - previousId));
+            out.putVarint(cityIndex.get(flight.getDeparture_city()));
+            out.putVarint(cityIndex.get(flight.getArrival_city()));
+            previousId = flight.getFlight_id();
+
+            long departure = 0;
+            if (flight.getDeparture_time() == null) {
+                out.putVarint(0);
+            } else {
+                departure = flight.getDeparture_time().getEpochSecond();
+                out.putVarint(1 + zigzag(departure - previousDeparture));
+                previousDeparture = departure;
+            }
+            if (flight.getArrival_time() == null) {
+                out.putVarint(0);
+            } else {
+                out.putVarint(1 + zigzag(flight.getArrival_time().getEpochSecond() - departure));
+            }
+        }
+        out.finish();
+    }
+
+    /**
+     * Read a snapshot back into memory.
+     * @param channel the channel to read from. It is not closed.
+     * @return the flights of the snapshot in flight_id order, with their original flight IDs.
+     * @throws IOException if the snapshot is truncated, has an unknown version, fails its checksum or is otherwise
+     *                     malformed.
+     */
+    public static List<Flight> read(ReadableByteChannel channel) throws IOException {
+        Reader in = new Reader(channel);
+        byte[] magic = in.get(MAGIC.length);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("not a flight snapshot");
+            }
+        }
+        int version = in.get(1)[0];
+        if (version != 1 && version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version);
+        }
+        //every city takes at least its length byte
+        int cityCount = in.getCount(1);
+        String[] cities = new String[cityCount];
+        for (int i = 0; i < cityCount; i++) {
+            cities[i] = new String(in.get(in.getCount(1)), StandardCharsets.UTF_8);
+        }
+        //every flight takes at least a byte for its id delta and for each of its fields
+        int flightCount = in.getCount(version >= 2 ? 5 : 3);
+        List<Flight> flights = new ArrayList<>(flightCount);
+        long id = 0;
+        long previousDeparture = 0;
+        try {
+            for (int i = 0; i < flightCount; i++) {
+                id += unzigzag(in.getVarint());
+                if (id <= 0 || id > Integer.MAX_VALUE || (i > 0 && id <= flights.get(i - 1).getFlight_id())) {
+                    throw new IOException("flight ID " + id + " out of range or out of order in snapshot");
+                }
+                String departure = cities[in.getIndex(cityCount)];
+                String arrival = cities[in.getIndex(cityCount)];
+                Instant departureTime = null;
+                Instant arrivalTime = null;
+                if (version >= 2) {
+                    long departureField = in.getVarint();
+                    long departureSecond = 0;
+                    if (departureField != 0) {
+                        departureSecond = Math.addExact(previousDeparture, unzigzag(departureField - 1));
+                        previousDeparture = departureSecond;
+                        departureTime = Instant.ofEpochSecond(departureSecond);
+                    }
+                    long arrivalField = in.getVarint();
+                    if (arrivalField != 0) {
+                        arrivalTime = Instant.ofEpochSecond(Math.addExact(departureSecond, unzigzag(arrivalField - 1)));
+                    }
+                }
+                flights.add(new Flight((int) id, departure, arrival, departureTime, arrivalTime));
+            }
+        } catch (ArithmeticException | DateTimeException e) {
+            throw new IOException("flight time out of range in snapshot");
+        }
+        in.finish();
+        return flights;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Buffers output, keeping a running CRC32 of everything that has been written.
+     */
+    private static class Writer {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void putVarint(long value) throws IOException {
+            if (buffer.remaining() < 10) {
+                flush();
+            }
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Holds a whole snapshot in memory. The checksum is verified as soon as the snapshot is loaded, and every read
+     * is checked against the bytes left before the checksum.
+     */
+    private static class Reader {
+        private final ByteBuffer buffer;
+
+        Reader(ReadableByteChannel channel) throws IOException {
+            ByteBuffer loaded = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(loaded) >= 0) {
+                if (!loaded.hasRemaining()) {
+                    if (loaded.capacity() > Integer.MAX_VALUE / 2) {
+                        throw new IOException("snapshot is too large");
+                    }
+                    ByteBuffer grown = ByteBuffer.allocate(loaded.capacity() * 2);
+                    loaded.flip();
+                    grown.put(loaded);
+                    loaded = grown;
+                }
+            }
+            loaded.flip();
+            if (loaded.remaining() < MAGIC.length + 1 + 4) {
+                throw new IOException("snapshot is truncated");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(loaded.array(), 0, loaded.limit() - 4);
+            if (loaded.getInt(loaded.limit() - 4) != (int) crc.getValue()) {
+                throw new IOException("snapshot checksum mismatch");
+            }
+            loaded.limit(loaded.limit() - 4);
+            buffer = loaded;
+        }
+
+        byte[] get(int length) throws IOException {
+            if (length > buffer.remaining()) {
+                throw new IOException("snapshot is truncated");
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        long getVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (!buffer.hasRemaining()) {
+                    throw new IOException("snapshot is truncated");
+                }
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("malformed varint in snapshot");
+        }
+
+        /**
+         * Read a count or a length, which cannot be larger than the bytes left.
+         * @param bytesPerItem the fewest bytes each of the counted items takes.
+         */
+        int getCount(int bytesPerItem) throws IOException {
+            long count = getVarint();
+            if (count < 0 || count > buffer.remaining() / bytesPerItem) {
+                throw new IOException("count of " + count + " is larger than the rest of the snapshot");
+            }
+            return (int) count;
+        }
+
+        /**
+         * Read an index into a table of the given size.
+         */
+        int getIndex(int size) throws IOException {
+            long index = getVarint();
+            if (index < 0 || index >= size) {
+                throw new IOException("city index " + index + " out of range in snapshot");
+            }
+            return (int) index;
+        }
+
+        /**
+         * Check that every byte before the checksum has been decoded.
+         */
+        void finish() throws IOException {
+            if (buffer.hasRemaining()) {
+                throw new IOException(buffer.remaining() + " unexpected bytes at the end of the snapshot");
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package Application.DAO;
+
+import Application.Model.Flight;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark of column-lookup caching when turning flight rows into Flight objects: looking every column up by
+ * its label on every row (how the FlightDAO used to map rows), against FlightRowMapper, which looks the column
+ * positions up once per ResultSet. Both read the same table of flights from a private in-memory H2 database, so the
+ * numbers do not depend on the ./h2 files used by the tests.
+ *
+ * Caching the lookups saves time, not memory: both ways allocate the same per row (the driver's values and the
+ * Flight itself), which the gc.alloc.rate.norm results show.
+ *
+ * This is not a unit test (its name does not end in Test, so Maven does not run it), and it lives in a package
+ * because JMH does not accept benchmarks in the default package. Run it from the IDE through main, or from the
+ * command line with the test classpath:
+ *      mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *      java -cp target/classes:target/test-classes:$(cat cp.txt) Application.DAO.FlightColumnLookupBenchmark
+ * main enables the GC profiler, so the results include gc.alloc.rate.norm: the bytes allocated per query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlightColumnLookupBenchmark {
+
+    private static final String[] CITIES = {"tampa", "dallas", "reston", "morgantown", "chicago", "denver",
+            "seattle", "boston"};
+
+    @Param({"100000"})
+    public int rows;
+
+    private Connection connection;
+    private PreparedStatement query;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:flight_column_lookup_benchmark", "sa", "sa");
+        connection.prepareStatement("CREATE TABLE flight (flight_id int primary key auto_increment, " +
+                "departure_city varchar(255), arrival_city varchar(255), departure_time timestamp(0) with time zone, " +
+                "arrival_time timestamp(0) with time zone)").executeUpdate();
+        connection.setAutoCommit(false);
+        PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO flight (departure_city, arrival_city, departure_time, arrival_time) VALUES (?, ?, ?, ?)");
+        Instant start = Instant.parse("2026-01-01T00:00:00Z");
+        for(int i = 0; i < rows; i++){
+            insert.setString(1, CITIES[i % CITIES.length]);
+            insert.setString(2, CITIES[(i / CITIES.length) % CITIES.length]);
+            insert.setObject(3, FlightRowMapper.toTimestamp(start.plusSeconds(600L * i)));
+            insert.setObject(4, FlightRowMapper.toTimestamp(start.plusSeconds(600L * i + 7200)));
+            insert.addBatch();
+            if(i % 10000 == 9999){
+                insert.executeBatch();
+            }
+        }
+        insert.executeBatch();
+        connection.commit();
+        connection.setAutoCommit(true);
+        query = connection.prepareStatement("SELECT " + FlightRowMapper.COLUMNS + " FROM flight");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Map every row by column label, looking the columns up on every row.
+     */
+    @Benchmark
+    public List<Flight> lookUpColumnsPerRow() throws SQLException {
+        List<Flight> flights = new ArrayList<>();
+        ResultSet rs = query.executeQuery();
+        while(rs.next()){
+            OffsetDateTime departure = rs.getObject("departure_time", OffsetDateTime.class);
+            OffsetDateTime arrival = rs.getObject("arrival_time", OffsetDateTime.class);
+            flights.add(new Flight(rs.getInt("flight_id"), rs.getString("departure_city"),
+                    rs.getString("arrival_city"), departure == null ? null : departure.toInstant(),
+                    arrival == null ? null : arrival.toInstant()));
+        }
+        rs.close();
+        return flights;
+    }
+
+    /**
+     * Map every row by column index, with the columns looked up once per query.
+     */
+    @Benchmark
+    public List<Flight> lookUpColumnsOnce() throws SQLException {
+        ResultSet rs = query.executeQuery();
+        List<Flight> flights = FlightRowMapper.mapAll(rs);
+        rs.close();
+        return flights;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FlightColumnLookupBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
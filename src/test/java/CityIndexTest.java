@@ -0,0 +1,108 @@
+import Application.Application;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Service.FlightService;
+import Application.Util.CityIndex;
+import Application.Util.ConnectionUtil;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * This class tests city autocomplete and case-insensitive route lookups using the dummy data inserted as part of
+ * the Application.Application.databaseSetup() method, whose cities are tampa, dallas, reston and morgantown.
+ */
+public class CityIndexTest {
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+    public CityIndex cityIndex;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+        cityIndex = flightService.getCityIndex();
+    }
+
+    /**
+     * A prefix should match every city starting with it, ignoring case, in alphabetical order.
+     */
+    @Test
+    public void cityIndex_FindByPrefixTest1(){
+        Assert.assertEquals(List.of("tampa"), cityIndex.findByPrefix("Ta", 10));
+        Assert.assertEquals(List.of("dallas", "morgantown", "reston", "tampa"), cityIndex.findByPrefix("", 10));
+        Assert.assertEquals(List.of("dallas", "morgantown"), cityIndex.findByPrefix("", 2));
+        Assert.assertTrue(cityIndex.findByPrefix("x", 10).isEmpty());
+    }
+
+    /**
+     * Cities of added flights should become searchable, once, and a city should disappear when an update moves its
+     * last flight away.
+     */
+    @Test
+    public void cityIndex_InsertUpdateTest1(){
+        flightService.addFlight(new Flight("Tallahassee", "tampa"));
+        flightService.addFlight(new Flight("TALLAHASSEE", "dallas"));
+        Assert.assertEquals(List.of("Tallahassee", "tampa"), cityIndex.findByPrefix("ta", 10));
+
+        flightService.updateFlight(3, new Flight("dallas", "tampa"));
+        Assert.assertEquals(List.of("morgantown"), cityIndex.findByPrefix("m", 10));
+        Assert.assertEquals(List.of("reston"), cityIndex.findByPrefix("r", 10));
+        flightService.updateFlight(2, new Flight("dallas", "tampa"));
+        Assert.assertTrue(cityIndex.findByPrefix("r", 10).isEmpty());
+    }
+
+    /**
+     * Route lookups should ignore the case and surrounding whitespace of the requested cities.
+     */
+    @Test
+    public void flightDAO_GetFlightsFromCityToCityCaseInsensitiveTest1(){
+        List<Flight> flights = flightDAO.getAllFlightsFromCityToCity("Tampa", " DALLAS ");
+        Assert.assertEquals(2, flights.size());
+        Assert.assertTrue(flights.contains(new Flight(1, "tampa", "dallas")));
+        Assert.assertTrue(flights.contains(new Flight(5, "tampa", "dallas")));
+
+        flightDAO.insertFlight(new Flight("Tampa", "Dallas"));
+        Assert.assertEquals(3, flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").size());
+    }
+
+    /**
+     * The route lookup should be answered from the normalized key index rather than a full table scan.
+     */
+    @Test
+    public void flightDAO_RouteLookupUsesIndexTest1() throws SQLException {
+        PreparedStatement ps = ConnectionUtil.getConnection().prepareStatement(
+                "EXPLAIN SELECT * FROM flight WHERE departure_key = ? AND arrival_key = ?");
+        ps.setString(1, "tampa");
+        ps.setString(2, "dallas");
+        ResultSet rs = ps.executeQuery();
+        Assert.assertTrue(rs.next());
+        Assert.assertTrue(rs.getString(1).toUpperCase().contains("FLIGHT_ROUTE_KEY_IDX"));
+    }
+
+    /**
+     * CityIndex.normalize should produce the same key as the database, which only trims spaces, so that a city with
+     * a tab or a line break around it is found by its own name and not mixed up with the plain city.
+     */
+    @Test
+    public void cityIndex_NormalizeMatchesDatabaseTest1() throws SQLException {
+        for(String city : new String[]{" Tampa ", "\tTampa", "Tampa\n", " \u00a0Tampa\r "}){
+            Flight flight = flightDAO.insertFlight(new Flight(city, "dallas"));
+            PreparedStatement ps = ConnectionUtil.getConnection().prepareStatement(
+                    "SELECT departure_key FROM flight WHERE flight_id = ?");
+            ps.setInt(1, flight.getFlight_id());
+            ResultSet rs = ps.executeQuery();
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(rs.getString(1), CityIndex.normalize(city));
+        }
+        Assert.assertEquals(3, flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").size());
+        Assert.assertEquals(1, flightDAO.getAllFlightsFromCityToCity("\tTAMPA ", "dallas").size());
+    }
+}
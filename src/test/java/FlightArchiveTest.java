@@ -0,0 +1,174 @@
+import Application.Application;
+import Application.DAO.FlightArchiveDAO;
+import Application.DAO.FlightDAO;
+import Application.DAO.FlightImportDAO;
+import Application.Model.Flight;
+import Application.Service.ArchiveService;
+import Application.Service.FlightService;
+import Application.Service.SnapshotService;
+import Application.Util.ArchiveSegmentStore;
+import Application.Util.ConnectionUtil;
+import Application.Util.FlightSnapshot;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * This class tests retiring and archiving flights using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method:
+ *      (1, 'tampa', 'dallas'),
+ *      (2, 'tampa', 'reston'),
+ *      (3, 'reston', 'morgantown'),
+ *      (4, 'morgantown', 'dallas'),
+ *      (5, 'tampa', 'dallas'),
+ *      (6, 'dallas', 'tampa')
+ * Archive segments are written to a temporary directory.
+ */
+public class FlightArchiveTest {
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+    public ArchiveSegmentStore segmentStore;
+    public ArchiveService archiveService;
+    public Path archiveDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+        archiveDirectory = Files.createTempDirectory("flight-archive");
+        segmentStore = new ArchiveSegmentStore(archiveDirectory);
+        archiveService = new ArchiveService(flightService, new FlightArchiveDAO(), segmentStore, Duration.ofDays(30));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(archiveDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * A retired flight should disappear from every live query and from the statistics straight away.
+     */
+    @Test
+    public void flightService_RetireFlightTest1(){
+        Assert.assertEquals(new Flight(1, "tampa", "dallas"), flightService.retireFlight(1));
+        Assert.assertNull(flightService.retireFlight(1));
+        Assert.assertNull(flightDAO.getFlightById(1));
+        Assert.assertEquals(5, flightDAO.getAllFlights().size());
+        Assert.assertEquals(List.of(new Flight(5, "tampa", "dallas")),
+                flightDAO.getAllFlightsFromCityToCity("tampa", "dallas"));
+        Assert.assertEquals(1, flightService.getRouteStatistics().getRouteCount("tampa", "dallas").getCount());
+        Assert.assertNull(flightService.updateFlight(1, new Flight("tampa", "reston")));
+    }
+
+    /**
+     * Compaction should move retired flights to a segment and delete their rows, and includeArchived reads should
+     * still return them.
+     */
+    @Test
+    public void archiveService_CompactTest1() throws IOException {
+        flightService.retireFlight(1);
+        flightService.retireFlight(3);
+        Assert.assertEquals(new Flight(1, "tampa", "dallas"),
+                archiveService.getAllFlightsFromCityToCityIncludingArchived("Tampa", "Dallas").get(0));
+
+        Assert.assertEquals(2, archiveService.compact());
+        Assert.assertEquals(1, segmentStore.getSegments().size());
+        Assert.assertEquals(0, archiveService.compact());
+        Assert.assertEquals(1, segmentStore.getSegments().size());
+
+        Assert.assertEquals(List.of(new Flight(1, "tampa", "dallas"), new Flight(3, "reston", "morgantown")),
+                segmentStore.readAll());
+        Assert.assertEquals(4, flightDAO.getAllFlights().size());
+        Assert.assertEquals(6, archiveService.getAllFlightsIncludingArchived().size());
+        Assert.assertEquals(List.of(new Flight(1, "tampa", "dallas"), new Flight(5, "tampa", "dallas")),
+                archiveService.getAllFlightsFromCityToCityIncludingArchived("tampa", "dallas"));
+    }
+
+    /**
+     * Compaction should archive live flights created before the retention period, and leave newer ones alone.
+     */
+    @Test
+    public void archiveService_RetentionTest1() throws SQLException, IOException {
+        PreparedStatement ps = ConnectionUtil.getConnection().prepareStatement(
+                "UPDATE flight SET created_at = DATEADD(DAY, -31, CURRENT_TIMESTAMP) WHERE flight_id IN (2, 4)");
+        ps.executeUpdate();
+
+        Assert.assertEquals(2, archiveService.compact());
+        Assert.assertEquals(4, flightDAO.getAllFlights().size());
+        Assert.assertNull(flightDAO.getFlightById(2));
+        Assert.assertEquals(0, flightService.getRouteStatistics().getRouteCount("tampa", "reston").getCount());
+        Assert.assertEquals(List.of(new Flight(2, "tampa", "reston"), new Flight(4, "morgantown", "dallas")),
+                segmentStore.readAll());
+    }
+
+    /**
+     * A flight archived twice, as after a compaction interrupted before deleting its rows, should be read once, and
+     * a new store on the same directory should continue the segment sequence.
+     */
+    @Test
+    public void archiveSegmentStore_AppendTest1() throws IOException {
+        segmentStore.append(List.of(new Flight(1, "tampa", "dallas")));
+        new ArchiveSegmentStore(archiveDirectory).append(List.of(new Flight(1, "tampa", "dallas"),
+                new Flight(2, "tampa", "reston")));
+        Assert.assertEquals(2, segmentStore.getSegments().size());
+        Assert.assertEquals(List.of(new Flight(1, "tampa", "dallas"), new Flight(2, "tampa", "reston")),
+                segmentStore.readAll());
+    }
+
+    /**
+     * After a snapshot is imported, new flights should get IDs past the archived ones, so that an archived flight is
+     * never hidden behind a live flight with the same ID.
+     */
+    @Test
+    public void snapshotService_ImportAfterArchiveTest1() throws IOException {
+        Flight added = flightDAO.insertFlight(new Flight("tampa", "boston"));
+        flightService.retireFlight(added.getFlight_id());
+        Assert.assertEquals(1, archiveService.compact());
+        Assert.assertEquals(added.getFlight_id(), segmentStore.getMaxFlightId());
+
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        FlightSnapshot.write(List.of(new Flight(1, "tampa", "dallas")), Channels.newChannel(snapshot));
+        SnapshotService snapshotService = new SnapshotService(flightDAO, new FlightImportDAO(), segmentStore);
+        Assert.assertEquals(1, snapshotService.importSnapshot(
+                Channels.newChannel(new ByteArrayInputStream(snapshot.toByteArray()))));
+
+        Flight next = flightDAO.insertFlight(new Flight("tampa", "reston"));
+        Assert.assertEquals(added.getFlight_id() + 1, next.getFlight_id());
+        Assert.assertEquals(List.of(new Flight(1, "tampa", "dallas"), added, next),
+                archiveService.getAllFlightsIncludingArchived());
+    }
+
+    /**
+     * Recreating the flight table should delete the archive of the old one, whose flight IDs are handed out again.
+     */
+    @Test
+    public void application_DatabaseSetupClearsArchiveTest1() throws IOException {
+        segmentStore.append(List.of(new Flight(1, "tampa", "boston")));
+        System.setProperty("flights.archive.dir", archiveDirectory.toString());
+        try {
+            Application.databaseSetup();
+        } finally {
+            System.clearProperty("flights.archive.dir");
+        }
+        Assert.assertTrue(segmentStore.getSegments().isEmpty());
+        Assert.assertEquals(new Flight(1, "tampa", "dallas"), archiveService.getAllFlightsIncludingArchived().get(0));
+    }
+}
@@ -0,0 +1,371 @@
+import Application.Application;
+import Application.Controller.FlightController;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Model.FlightChange;
+import Application.Service.FlightChangeFeed;
+import Application.Service.FlightService;
+import io.javalin.Javalin;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class tests the change feed on its own and as it is fed by the FlightService.
+ */
+public class FlightChangeFeedTest {
+    public FlightDAO mockFlightDAO;
+    public FlightService flightService;
+
+    @Before
+    public void setUp(){
+        mockFlightDAO = Mockito.mock(FlightDAO.class);
+        flightService = new FlightService(mockFlightDAO);
+    }
+
+    /**
+     * A sink that records what it receives. Changes can be held back until release() is called to simulate a slow
+     * consumer.
+     */
+    private static class RecordingSink implements FlightChangeFeed.Sink {
+        final List<FlightChange> changes = new CopyOnWriteArrayList<>();
+        final List<long[]> gaps = new CopyOnWriteArrayList<>();
+        final List<Long> resets = new CopyOnWriteArrayList<>();
+        final CountDownLatch released;
+        volatile boolean closed;
+
+        RecordingSink(boolean slow) {
+            released = new CountDownLatch(slow ? 1 : 0);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public void send(FlightChange change) throws InterruptedException {
+            released.await();
+            changes.add(change);
+        }
+
+        @Override
+        public void gap(long firstMissed, long lastMissed) {
+            gaps.add(new long[]{firstMissed, lastMissed});
+        }
+
+        @Override
+        public void reset(long resumeAfter) {
+            resets.add(resumeAfter);
+        }
+
+        @Override
+        public void keepAlive() {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            release();
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!condition.getAsBoolean()){
+            if(System.nanoTime() > deadline){
+                Assert.fail("timed out");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Every subscriber should receive every change published after it subscribed, in sequence order.
+     */
+    @Test
+    public void flightChangeFeed_FanOutTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(64, FlightChangeFeed.SlowConsumerPolicy.DROP, 2);
+        feed.publish(FlightChange.INSERT, new Flight(1, "tampa", "dallas"));
+        RecordingSink[] sinks = new RecordingSink[50];
+        for(int i = 0; i < sinks.length; i++){
+            sinks[i] = new RecordingSink(false);
+            feed.subscribe(-1, sinks[i]);
+        }
+        for(int i = 2; i <= 20; i++){
+            feed.publish(FlightChange.UPDATE, new Flight(i, "tampa", "dallas"));
+        }
+        for(RecordingSink sink : sinks){
+            waitFor(() -> sink.changes.size() == 19);
+            for(int i = 0; i < 19; i++){
+                Assert.assertEquals(i + 2, sink.changes.get(i).getSequence());
+            }
+        }
+    }
+
+    /**
+     * Thousands of subscribers should each receive every change from the shared ring. Subscribers that do not read
+     * should neither hold up the publisher nor the other subscribers, as long as dispatcher threads are left.
+     */
+    @Test
+    public void flightChangeFeed_ManySubscribersTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(4096, FlightChangeFeed.SlowConsumerPolicy.DROP, 4);
+        RecordingSink[] sinks = new RecordingSink[5000];
+        for(int i = 0; i < sinks.length; i++){
+            sinks[i] = new RecordingSink(i % 2000 == 0);
+            feed.subscribe(-1, sinks[i]);
+        }
+        for(int i = 1; i <= 100; i++){
+            feed.publish(FlightChange.INSERT, new Flight(i, "tampa", "dallas"));
+        }
+        Assert.assertEquals(100, feed.getLastSequence());
+        for(int i = 0; i < sinks.length; i++){
+            RecordingSink sink = sinks[i];
+            if(i % 2000 != 0){
+                waitFor(() -> sink.changes.size() == 100);
+            }
+        }
+        for(RecordingSink sink : sinks){
+            sink.release();
+            waitFor(() -> sink.changes.size() == 100);
+            Assert.assertEquals(100, sink.changes.get(99).getSequence());
+            Assert.assertTrue(sink.gaps.isEmpty());
+        }
+    }
+
+    /**
+     * A subscriber resuming from a sequence number should receive the changes after it that are still held.
+     */
+    @Test
+    public void flightChangeFeed_ResumeTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(64, FlightChangeFeed.SlowConsumerPolicy.DROP, 2);
+        for(int i = 1; i <= 10; i++){
+            feed.publish(FlightChange.INSERT, new Flight(i, "tampa", "dallas"));
+        }
+        RecordingSink sink = new RecordingSink(false);
+        feed.subscribe(7, sink);
+        waitFor(() -> sink.changes.size() == 3);
+        Assert.assertEquals(8, sink.changes.get(0).getSequence());
+        Assert.assertEquals(10, sink.changes.get(2).getSequence());
+        Assert.assertTrue(sink.gaps.isEmpty());
+    }
+
+    /**
+     * Under the DROP policy, a subscriber that falls behind by more than the ring capacity should be told about the
+     * gap and continue with the oldest change held. A fast subscriber should be unaffected.
+     */
+    @Test
+    public void flightChangeFeed_SlowConsumerDropTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(8, FlightChangeFeed.SlowConsumerPolicy.DROP, 2);
+        RecordingSink slow = new RecordingSink(true);
+        RecordingSink fast = new RecordingSink(false);
+        feed.subscribe(-1, slow);
+        feed.subscribe(-1, fast);
+        for(int i = 1; i <= 40; i++){
+            feed.publish(FlightChange.INSERT, new Flight(i, "tampa", "dallas"));
+            int published = i;
+            waitFor(() -> fast.changes.size() == published);
+        }
+        Assert.assertTrue(fast.gaps.isEmpty());
+        slow.release();
+        waitFor(() -> !slow.changes.isEmpty() && slow.changes.get(slow.changes.size() - 1).getSequence() == 40);
+        Assert.assertFalse(slow.gaps.isEmpty());
+        Assert.assertFalse(slow.closed);
+        Assert.assertTrue(slow.changes.size() < 40);
+    }
+
+    /**
+     * Under the DISCONNECT policy, a subscriber that falls behind by more than the ring capacity should be closed
+     * and removed from the feed.
+     */
+    @Test
+    public void flightChangeFeed_SlowConsumerDisconnectTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(8, FlightChangeFeed.SlowConsumerPolicy.DISCONNECT, 2);
+        RecordingSink slow = new RecordingSink(true);
+        feed.subscribe(-1, slow);
+        for(int i = 1; i <= 40; i++){
+            feed.publish(FlightChange.INSERT, new Flight(i, "tampa", "dallas"));
+        }
+        slow.release();
+        waitFor(() -> slow.closed);
+        Assert.assertEquals(0, feed.getSubscriberCount());
+    }
+
+    /**
+     * A subscriber whose write blocks for longer than the write timeout should be closed, so that the dispatcher
+     * thread it held goes on to serve the other subscribers.
+     */
+    @Test
+    public void flightChangeFeed_WriteTimeoutTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(8, FlightChangeFeed.SlowConsumerPolicy.DROP, 1,
+                Duration.ofMillis(200));
+        RecordingSink stuck = new RecordingSink(true);
+        feed.subscribe(-1, stuck);
+        feed.publish(FlightChange.INSERT, new Flight(1, "tampa", "dallas"));
+        RecordingSink fast = new RecordingSink(false);
+        feed.subscribe(-1, fast);
+        feed.publish(FlightChange.INSERT, new Flight(2, "tampa", "dallas"));
+        waitFor(() -> stuck.closed);
+        waitFor(() -> fast.changes.size() == 1);
+        Assert.assertEquals(1, feed.getSubscriberCount());
+        Assert.assertEquals(2, fast.changes.get(0).getSequence());
+    }
+
+    /**
+     * A subscriber resuming from an event id of another feed, eg from before a restart, or from a sequence number
+     * this feed has not reached, should be told to reset and then receive new changes. One resuming from before the
+     * oldest change held should be told about the gap.
+     */
+    @Test
+    public void flightChangeFeed_ResumeResetTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(8, FlightChangeFeed.SlowConsumerPolicy.DISCONNECT, 2);
+        for(int i = 1; i <= 20; i++){
+            feed.publish(FlightChange.INSERT, new Flight(i, "tampa", "dallas"));
+        }
+        RecordingSink restarted = new RecordingSink(false);
+        feed.subscribe("0-5", restarted);
+        RecordingSink ahead = new RecordingSink(false);
+        feed.subscribe(25, ahead);
+        RecordingSink behind = new RecordingSink(false);
+        feed.subscribe(feed.eventId(2), behind);
+        waitFor(() -> restarted.resets.size() == 1 && ahead.resets.size() == 1 && behind.changes.size() == 8);
+
+        Assert.assertEquals(List.of(20L), restarted.resets);
+        Assert.assertEquals(List.of(20L), ahead.resets);
+        Assert.assertTrue(behind.resets.isEmpty());
+        Assert.assertEquals(1, behind.gaps.size());
+        Assert.assertArrayEquals(new long[]{3, 12}, behind.gaps.get(0));
+        Assert.assertEquals(13, behind.changes.get(0).getSequence());
+
+        feed.publish(FlightChange.INSERT, new Flight(21, "tampa", "dallas"));
+        waitFor(() -> restarted.changes.size() == 1 && ahead.changes.size() == 1);
+        Assert.assertEquals(21, restarted.changes.get(0).getSequence());
+        Assert.assertFalse(restarted.closed || ahead.closed || behind.closed);
+    }
+
+    /**
+     * A published reset should reach subscribers after the changes published before it, and a subscriber resuming
+     * from before it should receive it as well.
+     */
+    @Test
+    public void flightChangeFeed_PublishResetTest1() throws InterruptedException {
+        FlightChangeFeed feed = new FlightChangeFeed(8, FlightChangeFeed.SlowConsumerPolicy.DISCONNECT, 2);
+        RecordingSink live = new RecordingSink(false);
+        feed.subscribe(-1, live);
+        feed.publish(FlightChange.INSERT, new Flight(1, "tampa", "dallas"));
+        Assert.assertEquals(2, feed.publishReset());
+        feed.publish(FlightChange.INSERT, new Flight(2, "tampa", "dallas"));
+        RecordingSink resumed = new RecordingSink(false);
+        feed.subscribe(feed.eventId(1), resumed);
+        waitFor(() -> live.changes.size() == 2 && resumed.changes.size() == 1);
+
+        Assert.assertEquals(List.of(2L), live.resets);
+        Assert.assertEquals(1, live.changes.get(0).getSequence());
+        Assert.assertEquals(3, live.changes.get(1).getSequence());
+        Assert.assertEquals(List.of(2L), resumed.resets);
+        Assert.assertEquals(3, resumed.changes.get(0).getSequence());
+    }
+
+    /**
+     * GET /flights/changes should stream inserted flights as Server-Sent Events with ids a reconnecting client can
+     * resume after, and answer an id it did not issue with a reset event.
+     */
+    @Test(timeout = 60000)
+    public void flightController_ChangeFeedTest1() throws Exception {
+        Application.databaseSetup();
+        System.setProperty("flights.warmup.iterations", "0");
+        Javalin app = new FlightController().startAPI().start(0);
+        HttpClient client = HttpClient.newHttpClient();
+        String baseUrl = "http://localhost:" + app.port();
+        try {
+            String resetId;
+            try (BufferedReader events = openChangeFeed(client, baseUrl, "0-7")) {
+                //the reset is sent once the client is subscribed, so the insert below cannot be missed
+                Map<String, String> reset = readEvent(events);
+                Assert.assertEquals("reset", reset.get("event"));
+                Assert.assertEquals("{\"first_missed\":null,\"last_missed\":null}", reset.get("data"));
+                resetId = reset.get("id");
+                Assert.assertTrue(resetId.endsWith("-0"));
+
+                HttpResponse<String> posted = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/flights"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"departure_city\":\"tampa\"," +
+                                "\"arrival_city\":\"boston\"}")).build(), HttpResponse.BodyHandlers.ofString());
+                Assert.assertEquals(200, posted.statusCode());
+
+                Map<String, String> insert = readEvent(events);
+                Assert.assertEquals("insert", insert.get("event"));
+                Assert.assertEquals(resetId.replace("-0", "-1"), insert.get("id"));
+                Assert.assertTrue(insert.get("data").contains("\"arrival_city\":\"boston\""));
+            }
+            try (BufferedReader events = openChangeFeed(client, baseUrl, resetId)) {
+                Map<String, String> replayed = readEvent(events);
+                Assert.assertEquals("insert", replayed.get("event"));
+                Assert.assertEquals(resetId.replace("-0", "-1"), replayed.get("id"));
+            }
+        } finally {
+            app.stop();
+            System.clearProperty("flights.warmup.iterations");
+        }
+    }
+
+    private static BufferedReader openChangeFeed(HttpClient client, String baseUrl, String lastEventId)
+            throws Exception {
+        HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl +
+                "/flights/changes")).header("Accept", "text/event-stream").header("Last-Event-ID", lastEventId)
+                .GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        Assert.assertEquals(200, response.statusCode());
+        return new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the fields of the next event of a Server-Sent Events stream, skipping comments.
+     */
+    private static Map<String, String> readEvent(BufferedReader events) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        for(String line = events.readLine(); line != null; line = events.readLine()){
+            if(line.isEmpty()){
+                if(!fields.isEmpty()){
+                    return fields;
+                }
+            }else if(!line.startsWith(":")){
+                int colon = line.indexOf(':');
+                fields.put(line.substring(0, colon), line.substring(colon + 1).trim());
+            }
+        }
+        throw new IOException("the stream ended");
+    }
+
+    /**
+     * flightService.addFlight and flightService.updateFlight should publish the persisted flight, and nothing should
+     * be published when an update targets a nonexistent flight.
+     */
+    @Test
+    public void flightService_PublishesChangesTest1() {
+        Flight persisted = new Flight(1, "dallas", "morgantown");
+        Mockito.when(mockFlightDAO.insertFlight(Mockito.any())).thenReturn(persisted);
+        Mockito.when(mockFlightDAO.getFlightById(1)).thenReturn(persisted);
+        flightService.addFlight(new Flight("dallas", "morgantown"));
+        flightService.updateFlight(1, new Flight("dallas", "morgantown"));
+        flightService.updateFlight(2, new Flight("dallas", "morgantown"));
+        Assert.assertEquals(2, flightService.getChangeFeed().getLastSequence());
+    }
+}
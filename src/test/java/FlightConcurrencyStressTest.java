@@ -0,0 +1,286 @@
+import Application.Application;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Model.FlightPatch;
+import Application.Service.FlightService;
+import Application.Service.RouteStatistics;
+import Application.Util.ConnectionUtil;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hammers FlightDAO and FlightService from many threads at once against the real H2 database, the way
+ * the Jetty threads of the API do, and checks that no write is lost and that reads agree with committed writes.
+ * Every test prints its throughput, so a change that makes concurrent access faster or slower shows up in the test
+ * output.
+ *
+ * The tests start from the dummy data inserted as part of the Application.Application.databaseSetup() method
+ * (flights 1 to 6).
+ */
+public class FlightConcurrencyStressTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS_PER_THREAD = 300;
+    private static final Instant NOON = Instant.parse("2026-10-19T12:00:00Z");
+    private static final String[] CITIES = {"tampa", "dallas", "reston", "morgantown", "boston", "denver"};
+
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+    }
+
+    /**
+     * A unit of work run by every thread of a stress run.
+     */
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    /**
+     * Run a worker on THREADS threads that all start at the same moment, rethrowing the first failure.
+     * @param operations the total number of operations the workers perform, used to print the throughput.
+     */
+    private static void stress(String name, long operations, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                worker.run(thread);
+                return null;
+            }));
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        try {
+            for(Future<?> future : futures){
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = Math.max(1, System.nanoTime() - started);
+        System.out.println(String.format("%s: %d operations on %d threads in %d ms (%.0f ops/s)", name, operations,
+                THREADS, TimeUnit.NANOSECONDS.toMillis(elapsed), operations * 1e9 / elapsed));
+    }
+
+    /**
+     * @return the statistics of the flights as they are in the database.
+     */
+    private RouteStatistics statisticsOfTable(){
+        RouteStatistics statistics = new RouteStatistics();
+        statistics.rebuild(flightDAO.getAllFlights());
+        return statistics;
+    }
+
+    /**
+     * Concurrent inserts should each get a distinct flight ID, across shards too, and every one of them should be
+     * stored exactly as it was returned.
+     */
+    @Test
+    public void flightDAO_ConcurrentInsertTest1() throws Exception {
+        ConnectionUtil.setShardCount(3);
+        try {
+            Application.databaseSetup();
+            List<Flight> dummyFlights = flightDAO.getAllFlights();
+            Map<Integer, Flight> inserted = new ConcurrentHashMap<>();
+            AtomicLong duplicates = new AtomicLong();
+            stress("insert", (long) THREADS * OPERATIONS_PER_THREAD, thread -> {
+                for(int i = 0; i < OPERATIONS_PER_THREAD; i++){
+                    Flight flight = flightDAO.insertFlight(new Flight(CITIES[(thread + i) % CITIES.length],
+                            "city-" + thread + "-" + i));
+                    Assert.assertNotNull(flight);
+                    if(inserted.putIfAbsent(flight.getFlight_id(), flight) != null){
+                        duplicates.incrementAndGet();
+                    }
+                }
+            });
+
+            Assert.assertEquals(0, duplicates.get());
+            Assert.assertEquals(THREADS * OPERATIONS_PER_THREAD, inserted.size());
+            List<Flight> all = flightDAO.getAllFlights();
+            Assert.assertEquals(dummyFlights.size() + inserted.size(), all.size());
+            for(Flight flight : all){
+                if(!dummyFlights.contains(flight)){
+                    Assert.assertEquals(inserted.get(flight.getFlight_id()), flight);
+                }
+            }
+        } finally {
+            ConnectionUtil.setShardCount(1);
+            Application.databaseSetup();
+        }
+    }
+
+    /**
+     * Two threads patching different fields of the same flight should not overwrite each other's changes: every
+     * field ends up with the last value written by the thread that owns it. Each patch is a batched transaction,
+     * and the threads insert flights with single statements in between, so this also checks that a transaction
+     * never pulls in the statements of other threads.
+     */
+    @Test
+    public void flightService_NoLostUpdatesTest1() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for(int i = 0; i < THREADS / 2; i++){
+            ids.add(flightDAO.insertFlight(new Flight("tampa", "dallas")).getFlight_id());
+        }
+        Map<Integer, Flight> inserted = new ConcurrentHashMap<>();
+        stress("patch", (long) THREADS * OPERATIONS_PER_THREAD * 2, thread -> {
+            //thread 2k owns the departure time of flight k and thread 2k+1 its arrival time
+            int id = ids.get(thread / 2);
+            for(int i = 0; i < OPERATIONS_PER_THREAD; i++){
+                Instant time = NOON.plusSeconds(60L * i);
+                FlightPatch patch = thread % 2 == 0 ? new FlightPatch(id, null, null, time, null)
+                        : new FlightPatch(id, null, null, null, time);
+                Assert.assertNotNull(flightService.patchFlights(List.of(patch)).get(0).getFlight());
+                Flight flight = flightDAO.insertFlight(new Flight(CITIES[i % CITIES.length], "city-" + thread));
+                inserted.put(flight.getFlight_id(), flight);
+            }
+        });
+
+        Instant last = NOON.plusSeconds(60L * (OPERATIONS_PER_THREAD - 1));
+        for(int id : ids){
+            Assert.assertEquals(new Flight(id, "tampa", "dallas", last, last), flightDAO.getFlightById(id));
+        }
+        Assert.assertEquals(6 + ids.size() + inserted.size(), flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * Many threads replacing the same few flights through the service should leave the route statistics exactly
+     * as they would be rebuilt from the table: every update must be counted against the flight as it really was
+     * just before it.
+     */
+    @Test
+    public void flightService_ConcurrentUpdateStatisticsTest1() throws Exception {
+        stress("update", (long) THREADS * OPERATIONS_PER_THREAD, thread -> {
+            Random random = new Random(thread);
+            for(int i = 0; i < OPERATIONS_PER_THREAD; i++){
+                int id = 1 + random.nextInt(6);
+                Flight flight = new Flight(CITIES[random.nextInt(CITIES.length)], CITIES[random.nextInt(CITIES.length)]);
+                Flight updated = flightService.updateFlight(id, flight);
+                Assert.assertNotNull(updated);
+                Assert.assertEquals(id, updated.getFlight_id());
+            }
+        });
+
+        Assert.assertEquals(6, flightDAO.getAllFlights().size());
+        Assert.assertEquals(statisticsOfTable().getTopRoutes(Integer.MAX_VALUE),
+                flightService.getRouteStatistics().getTopRoutes(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Set-based patches that change the arrival city of every flight out of tampa, while other threads keep
+     * inserting flights out of tampa, should change exactly the flights they report: the statistics, which only
+     * learn of a change through what was reported, should match the table in the end, and every insert should be
+     * counted once.
+     */
+    @Test
+    public void flightService_SetPatchDuringInsertsTest1() throws Exception {
+        AtomicLong patched = new AtomicLong();
+        stress("insert and set-based patch", (long) THREADS * OPERATIONS_PER_THREAD, thread -> {
+            Random random = new Random(thread);
+            for(int i = 0; i < OPERATIONS_PER_THREAD; i++){
+                if(thread % 4 == 0 && i % 20 == 0){
+                    String arrival = CITIES[random.nextInt(CITIES.length)];
+                    patched.addAndGet(flightService.patchFlightsWhere(new FlightPatch("tampa", null),
+                            new FlightPatch(null, arrival)).size());
+                }else{
+                    Assert.assertNotNull(flightService.addFlight(new Flight("tampa", "dallas")));
+                }
+            }
+        });
+        System.out.println("insert and set-based patch: " + patched.get() + " flights were patched");
+
+        int inserted = THREADS * OPERATIONS_PER_THREAD - (THREADS / 4) * (OPERATIONS_PER_THREAD / 20);
+        Assert.assertEquals(6 + inserted, flightDAO.getAllFlights().size());
+        Assert.assertEquals(statisticsOfTable().getTopRoutes(Integer.MAX_VALUE),
+                flightService.getRouteStatistics().getTopRoutes(Integer.MAX_VALUE));
+    }
+
+    /**
+     * A mix of inserts, updates, patches, set-based patches (of times and of cities), retirements and reads. Every
+     * list read should contain each flight the reading thread inserted (and did not retire) before the read, without
+     * duplicates, and in the end the statistics should match the table.
+     */
+    @Test
+    public void flightService_MixedWorkloadTest1() throws Exception {
+        AtomicLong reads = new AtomicLong();
+        stress("mixed", (long) THREADS * OPERATIONS_PER_THREAD, thread -> {
+            Random random = new Random(thread);
+            Set<Integer> mine = new HashSet<>();
+            for(int i = 0; i < OPERATIONS_PER_THREAD; i++){
+                int choice = random.nextInt(100);
+                String departure = CITIES[random.nextInt(CITIES.length)];
+                String arrival = CITIES[random.nextInt(CITIES.length)];
+                if(choice < 25){
+                    Flight added = flightService.addFlight(new Flight(departure, arrival));
+                    Assert.assertNotNull(added);
+                    mine.add(added.getFlight_id());
+                }else if(choice < 40){
+                    flightService.updateFlight(1 + random.nextInt(6), new Flight(departure, arrival));
+                }else if(choice < 50){
+                    flightService.patchFlight(1 + random.nextInt(6), new FlightPatch(null, arrival));
+                }else if(choice < 51){
+                    flightService.patchFlightsWhere(new FlightPatch(departure, null),
+                            new FlightPatch(null, null, null, NOON.plusSeconds(i), null));
+                }else if(choice < 52){
+                    //changes the routes of flights other threads may be inserting at the same time
+                    flightService.patchFlightsWhere(new FlightPatch(departure, null), new FlightPatch(null, arrival));
+                }else if(choice < 55 && !mine.isEmpty()){
+                    int id = mine.iterator().next();
+                    Assert.assertNotNull(flightService.retireFlight(id));
+                    mine.remove(id);
+                }else if(choice < 85){
+                    reads.incrementAndGet();
+                    Map<Integer, Flight> listed = new TreeMap<>();
+                    for(Flight flight : flightService.getAllFlights()){
+                        Assert.assertNull("listed twice: " + flight, listed.put(flight.getFlight_id(), flight));
+                    }
+                    Assert.assertTrue(listed.keySet().containsAll(mine));
+                }else{
+                    reads.incrementAndGet();
+                    for(Flight flight : flightService.getAllFlightsFromCityToCity(departure, arrival)){
+                        Assert.assertEquals(departure, flight.getDeparture_city());
+                        Assert.assertEquals(arrival, flight.getArrival_city());
+                    }
+                }
+            }
+        });
+        System.out.println("mixed: " + reads.get() + " of the operations were reads");
+
+        List<Flight> all = flightDAO.getAllFlights();
+        List<Integer> ids = new ArrayList<>();
+        for(Flight flight : all){
+            ids.add(flight.getFlight_id());
+        }
+        List<Integer> sorted = new ArrayList<>(new HashSet<>(ids));
+        Collections.sort(sorted);
+        Assert.assertEquals(sorted, ids);
+        Assert.assertEquals(statisticsOfTable().getTopRoutes(Integer.MAX_VALUE),
+                flightService.getRouteStatistics().getTopRoutes(Integer.MAX_VALUE));
+    }
+}
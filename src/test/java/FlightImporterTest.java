@@ -0,0 +1,124 @@
+import Application.Application;
+import Application.DAO.FlightDAO;
+import Application.DAO.FlightImportDAO;
+import Application.FlightImporter;
+import Application.Model.Flight;
+import Application.Util.FlightFileParser;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * This class tests the bulk importer against the dummy data inserted by Application.databaseSetup(), which contains
+ * six flights.
+ */
+public class FlightImporterTest {
+    public FlightDAO flightDAO;
+    public FlightImporter flightImporter;
+    public Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightImporter = new FlightImporter();
+        //tiny chunks so that the test files are split across several chunks and threads
+        flightImporter.setChunkSize(16);
+        flightImporter.setBatchSize(2);
+        flightImporter.setThreads(3);
+        file = Files.createTempFile("flights", ".csv");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Every row of a CSV file should be appended to the flight table, skipping the header line.
+     */
+    @Test
+    public void flightImporter_ImportCsvTest1() throws IOException {
+        Files.write(file, ("departure_city,arrival_city\n" +
+                "tampa,dallas\n" +
+                "\"reston\", morgantown\r\n" +
+                "dallas,reston\n" +
+                "morgantown,tampa").getBytes(StandardCharsets.UTF_8));
+        long rows = flightImporter.importFile(file, FlightFileParser.Format.CSV, false);
+        Assert.assertEquals(4, rows);
+        Assert.assertEquals(0, flightImporter.getRejectedLines());
+        List<Flight> allFlights = flightDAO.getAllFlights();
+        Assert.assertEquals(10, allFlights.size());
+        Assert.assertTrue(allFlights.contains(new Flight(7, "tampa", "dallas")));
+        Assert.assertTrue(allFlights.contains(new Flight(8, "reston", "morgantown")));
+        Assert.assertTrue(allFlights.contains(new Flight(9, "dallas", "reston")));
+        Assert.assertTrue(allFlights.contains(new Flight(10, "morgantown", "tampa")));
+    }
+
+    /**
+     * Quoted CSV values may contain commas and "" for a quote. A line whose quote is never closed, or with text after
+     * a closing quote, should be rejected rather than split in the wrong place.
+     */
+    @Test
+    public void flightImporter_ImportCsvQuotesTest1() throws IOException {
+        Files.write(file, ("departure_city,arrival_city\n" +
+                "\"New York, NY\",tampa\n" +
+                "dallas, \"The \"\"Big\"\" Apple\" \n" +
+                "\"New York, NY,tampa\n" +
+                "tampa,\"dallas\" fort worth\n" +
+                "reston,\"\"\n").getBytes(StandardCharsets.UTF_8));
+        long rows = flightImporter.importFile(file, FlightFileParser.Format.CSV, false);
+        Assert.assertEquals(2, rows);
+        Assert.assertEquals(3, flightImporter.getRejectedLines());
+        Assert.assertEquals(new Flight(7, "New York, NY", "tampa"), flightDAO.getFlightById(7));
+        Assert.assertEquals(new Flight(8, "dallas", "The \"Big\" Apple"), flightDAO.getFlightById(8));
+        Assert.assertEquals(8, flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * NDJSON rows should be imported regardless of the order of their keys, and malformed rows should be skipped
+     * and counted. Blank lines are not counted as rejected.
+     */
+    @Test
+    public void flightImporter_ImportNdjsonTest1() throws IOException {
+        Files.write(file, ("{\"departure_city\":\"tampa\",\"arrival_city\":\"dallas\"}\n" +
+                "{\"arrival_city\": \"tampa\", \"departure_city\": \"reston\"}\n" +
+                "not a flight\n" +
+                "  \n" +
+                "{\"departure_city\":\"st. john\\u0027s\",\"arrival_city\":\"dallas\"}\n").getBytes(StandardCharsets.UTF_8));
+        long rows = flightImporter.importFile(file, FlightFileParser.Format.NDJSON, false);
+        Assert.assertEquals(3, rows);
+        Assert.assertEquals(1, flightImporter.getRejectedLines());
+        Assert.assertEquals(new Flight(7, "tampa", "dallas"), flightDAO.getFlightById(7));
+        Assert.assertEquals(new Flight(8, "reston", "tampa"), flightDAO.getFlightById(8));
+        Assert.assertEquals(new Flight(9, "st. john's", "dallas"), flightDAO.getFlightById(9));
+    }
+
+    /**
+     * When a checkpoint exists for a file, the import should continue from the committed offset instead of loading
+     * the already imported rows a second time.
+     */
+    @Test
+    public void flightImporter_ResumeTest1() throws IOException {
+        String firstRow = "tampa,dallas\n";
+        Files.write(file, (firstRow + "reston,tampa\n").getBytes(StandardCharsets.UTF_8));
+        FlightImportDAO flightImportDAO = new FlightImportDAO();
+        flightImportDAO.createImportTables();
+        flightImportDAO.clearCheckpoint(file.toAbsolutePath().normalize().toString());
+        flightImportDAO.insertFlightsWithCheckpoint(List.of(new Flight("tampa", "dallas")), 10,
+                file.toAbsolutePath().normalize().toString(), firstRow.length());
+
+        long rows = flightImporter.importFile(file, FlightFileParser.Format.CSV, false);
+        Assert.assertEquals(1, rows);
+        Assert.assertEquals(8, flightDAO.getAllFlights().size());
+        Assert.assertEquals(new Flight(8, "reston", "tampa"), flightDAO.getFlightById(8));
+    }
+}
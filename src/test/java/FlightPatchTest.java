@@ -0,0 +1,271 @@
+import Application.Application;
+import Application.Controller.FlightController;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Model.FlightChange;
+import Application.Model.FlightPatch;
+import Application.Model.FlightPatchResult;
+import Application.Service.FlightChangeFeed;
+import Application.Service.FlightService;
+import Application.Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class tests partial and bulk updates using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method:
+ *      (1, 'tampa', 'dallas'),
+ *      (2, 'tampa', 'reston'),
+ *      (3, 'reston', 'morgantown'),
+ *      (4, 'morgantown', 'dallas'),
+ *      (5, 'tampa', 'dallas'),
+ *      (6, 'dallas', 'tampa')
+ */
+public class FlightPatchTest {
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+    }
+
+    /**
+     * A patch should change only the fields it sets.
+     */
+    @Test
+    public void flightService_PatchFlightTest1(){
+        Flight patched = flightService.patchFlight(4, new FlightPatch(null, "reston"));
+        Assert.assertEquals(new Flight(4, "morgantown", "reston"), patched);
+        Assert.assertEquals(patched, flightDAO.getFlightById(4));
+        Assert.assertEquals(1, flightService.getRouteStatistics().getRouteCount("morgantown", "reston").getCount());
+        Assert.assertEquals(0, flightService.getRouteStatistics().getRouteCount("morgantown", "dallas").getCount());
+    }
+
+    /**
+     * Patched times should be dropped to the second, like the times of a Flight, so the patched flight that is
+     * returned is the one that is stored, rather than one the database rounded up to the next second.
+     */
+    @Test
+    public void flightService_PatchFlightTimeTest1(){
+        Instant noon = Instant.parse("2026-10-19T12:00:00Z");
+        Flight patched = flightService.patchFlight(2, new FlightPatch(null, null, null,
+                noon.plusMillis(700), noon.plusSeconds(3600).plusMillis(999)));
+        Assert.assertEquals(new Flight(2, "tampa", "reston", noon, noon.plusSeconds(3600)), patched);
+        Assert.assertEquals(patched, flightDAO.getFlightById(2));
+
+        List<FlightPatchResult> results = flightService.patchFlightsWhere(new FlightPatch("reston", null),
+                new FlightPatch(null, null, null, noon.plusMillis(500), null));
+        Assert.assertEquals(noon, results.get(0).getFlight().getDeparture_time());
+        Assert.assertEquals(results.get(0).getFlight(), flightDAO.getFlightById(3));
+    }
+
+    /**
+     * Patching a flight that does not exist should return null and change nothing.
+     */
+    @Test
+    public void flightService_PatchFlightNotFoundTest1(){
+        Assert.assertNull(flightService.patchFlight(99, new FlightPatch("tampa", null)));
+        Assert.assertEquals(6, flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * A list of changes should report an outcome per flight ID, combine changes of the same flight, and publish one
+     * update per changed flight.
+     */
+    @Test
+    public void flightService_PatchFlightsTest1(){
+        List<FlightChange> published = new CopyOnWriteArrayList<>();
+        flightService.getChangeFeed().subscribe(-1, new RecordingSink(published));
+
+        List<FlightPatchResult> results = flightService.patchFlights(List.of(
+                new FlightPatch(1, null, "reston"),
+                new FlightPatch(99, "tampa", null),
+                new FlightPatch(6, "reston", null),
+                new FlightPatch(1, "dallas", null),
+                new FlightPatch(null, "tampa", null)));
+
+        Assert.assertEquals(4, results.size());
+        Assert.assertEquals(FlightPatchResult.UPDATED, results.get(0).getStatus());
+        Assert.assertEquals(new Flight(1, "dallas", "reston"), results.get(0).getFlight());
+        Assert.assertEquals(FlightPatchResult.NOT_FOUND, results.get(1).getStatus());
+        Assert.assertEquals(FlightPatchResult.UPDATED, results.get(2).getStatus());
+        Assert.assertEquals(FlightPatchResult.INVALID, results.get(3).getStatus());
+
+        Assert.assertEquals(new Flight(1, "dallas", "reston"), flightDAO.getFlightById(1));
+        Assert.assertEquals(new Flight(6, "reston", "tampa"), flightDAO.getFlightById(6));
+        Assert.assertEquals(1, flightService.getRouteStatistics().getRouteCount("tampa", "dallas").getCount());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while(published.size() < 2 && System.currentTimeMillis() < deadline){
+            Thread.yield();
+        }
+        Assert.assertEquals(2, published.size());
+    }
+
+    /**
+     * A predicate should change every matching flight, ignoring case, and only those.
+     */
+    @Test
+    public void flightService_PatchFlightsWhereTest1(){
+        List<FlightPatchResult> results = flightService.patchFlightsWhere(new FlightPatch("Tampa", "DALLAS"),
+                new FlightPatch(null, "morgantown"));
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(new Flight(1, "tampa", "morgantown"), results.get(0).getFlight());
+        Assert.assertEquals(new Flight(5, "tampa", "morgantown"), results.get(1).getFlight());
+        Assert.assertTrue(flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").isEmpty());
+        Assert.assertEquals(2, flightDAO.getAllFlightsFromCityToCity("tampa", "morgantown").size());
+        Assert.assertEquals(new Flight(2, "tampa", "reston"), flightDAO.getFlightById(2));
+        Assert.assertEquals(2, flightService.getRouteStatistics().getRouteCount("tampa", "morgantown").getCount());
+    }
+
+    /**
+     * A predicate without any city should be rejected.
+     */
+    @Test
+    public void flightService_PatchFlightsWhereInvalidTest1(){
+        Assert.assertNull(flightService.patchFlightsWhere(new FlightPatch(null, null), new FlightPatch("tampa", null)));
+    }
+
+    /**
+     * With several shards, bulk changes of the departure city should move flights to the shard of their new
+     * departure city, keeping their IDs.
+     */
+    @Test
+    public void flightService_PatchFlightsAcrossShardsTest1(){
+        ConnectionUtil.setShardCount(3);
+        try {
+            Application.databaseSetup();
+            flightService = new FlightService();
+            String newDeparture = "city0";
+            for(int i = 1; ConnectionUtil.shardForCity(newDeparture) == ConnectionUtil.shardForCity("tampa"); i++){
+                newDeparture = "city" + i;
+            }
+
+            List<FlightPatchResult> results = flightService.patchFlightsWhere(new FlightPatch("tampa", "dallas"),
+                    new FlightPatch(newDeparture, null));
+            Assert.assertEquals(2, results.size());
+            for(FlightPatchResult result : results){
+                Assert.assertEquals(FlightPatchResult.UPDATED, result.getStatus());
+                Assert.assertEquals(result.getFlight(), flightDAO.getFlightById(result.getFlight_id()));
+            }
+            Assert.assertEquals(2, flightDAO.getAllFlightsFromCityToCity(newDeparture, "dallas").size());
+            Assert.assertTrue(flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").isEmpty());
+            Assert.assertEquals(6, flightDAO.getAllFlights().size());
+        } finally {
+            ConnectionUtil.setShardCount(1);
+            Application.databaseSetup();
+        }
+    }
+
+    /**
+     * A PATCH whose body is the JSON literal null should be rejected with a 400 status, not fail with a 500.
+     */
+    @Test
+    public void flightController_PatchNullBodyTest1() throws Exception {
+        System.setProperty("flights.warmup.iterations", "0");
+        Javalin app = new FlightController().startAPI().start(0);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            for(String path : List.of("/flights/1", "/flights")){
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + app.port() + path))
+                        .method("PATCH", HttpRequest.BodyPublishers.ofString("null")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                Assert.assertEquals(path, 400, response.statusCode());
+            }
+            Assert.assertEquals(new Flight(1, "tampa", "dallas"), flightDAO.getFlightById(1));
+        } finally {
+            app.stop();
+            System.clearProperty("flights.warmup.iterations");
+        }
+    }
+
+    /**
+     * A patch setting a blank city should be rejected like a POST or PUT with one: with a 400 status for a single
+     * flight, and with an "invalid" outcome in the bulk forms, without changing any flight.
+     */
+    @Test
+    public void flightController_PatchBlankCityTest1() throws Exception {
+        System.setProperty("flights.warmup.iterations", "0");
+        Javalin app = new FlightController().startAPI().start(0);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<String> single = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + app.port() + "/flights/2"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"departure_city\":\"  \"}")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(400, single.statusCode());
+
+            HttpResponse<String> changes = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + app.port() + "/flights"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"changes\":[" +
+                            "{\"flight_id\":2,\"arrival_city\":\"\"},{\"flight_id\":3,\"arrival_city\":\"tampa\"}]}"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, changes.statusCode());
+            Assert.assertTrue(changes.body(), changes.body().contains("{\"flight_id\":2,\"status\":\"invalid\""));
+            Assert.assertTrue(changes.body(), changes.body().contains("{\"flight_id\":3,\"status\":\"updated\""));
+
+            HttpResponse<String> where = client.send(HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + app.port() + "/flights"))
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(
+                            "{\"where\":{\"departure_city\":\"tampa\"},\"set\":{\"arrival_city\":\" \"}}"))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, where.statusCode());
+            Assert.assertEquals("[{\"flight_id\":null,\"status\":\"invalid\",\"flight\":null}]", where.body());
+
+            Assert.assertEquals(new Flight(2, "tampa", "reston"), flightDAO.getFlightById(2));
+            Assert.assertEquals(new Flight(3, "reston", "tampa"), flightDAO.getFlightById(3));
+            Assert.assertEquals(new Flight(1, "tampa", "dallas"), flightDAO.getFlightById(1));
+        } finally {
+            app.stop();
+            System.clearProperty("flights.warmup.iterations");
+        }
+    }
+
+    /**
+     * Records the changes published on a feed.
+     */
+    private static class RecordingSink implements FlightChangeFeed.Sink {
+        private final List<FlightChange> changes;
+
+        RecordingSink(List<FlightChange> changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public void send(FlightChange change) {
+            changes.add(change);
+        }
+
+        @Override
+        public void gap(long firstMissed, long lastMissed) {
+        }
+
+        @Override
+        public void reset(long resumeAfter) {
+        }
+
+        @Override
+        public void keepAlive() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
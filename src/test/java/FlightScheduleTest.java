@@ -0,0 +1,147 @@
+import Application.Application;
+import Application.Controller.FlightController;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Model.FlightPatch;
+import Application.Service.FlightService;
+import Application.Util.ConnectionUtil;
+import Application.Util.FlightSnapshot;
+import io.javalin.Javalin;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * This class tests flight schedules (departure and arrival times) using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method, which has no times, plus scheduled flights added by each test.
+ */
+public class FlightScheduleTest {
+    private static final Instant NOON = Instant.parse("2026-10-19T12:00:00Z");
+
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+    }
+
+    private Flight scheduled(String departure_city, String arrival_city, Duration afterNoon){
+        return new Flight(0, departure_city, arrival_city, NOON.plus(afterNoon), NOON.plus(afterNoon).plusSeconds(7200));
+    }
+
+    /**
+     * Times should be stored and read back, to the second.
+     */
+    @Test
+    public void flightDAO_InsertScheduledFlightTest1(){
+        Flight flight = new Flight(0, "tampa", "dallas", NOON.plusMillis(1500), NOON.plusSeconds(9000));
+        Flight inserted = flightDAO.insertFlight(flight);
+        Assert.assertEquals(NOON.plusSeconds(1), inserted.getDeparture_time());
+        Assert.assertEquals(inserted, flightDAO.getFlightById(inserted.getFlight_id()));
+        Assert.assertNull(flightDAO.getFlightById(1).getDeparture_time());
+    }
+
+    /**
+     * A time window should return the flights leaving the city within it, in departure order, ignoring case.
+     */
+    @Test
+    public void flightService_GetFlightsDepartingBetweenTest1(){
+        Flight late = flightDAO.insertFlight(scheduled("tampa", "dallas", Duration.ofMinutes(90)));
+        Flight early = flightDAO.insertFlight(scheduled("tampa", "reston", Duration.ofMinutes(30)));
+        flightDAO.insertFlight(scheduled("tampa", "reston", Duration.ofHours(2)));
+        flightDAO.insertFlight(scheduled("dallas", "tampa", Duration.ofMinutes(45)));
+
+        Assert.assertEquals(List.of(early, late),
+                flightService.getFlightsDepartingBetween("Tampa", NOON, NOON.plus(Duration.ofHours(2))));
+        Assert.assertTrue(flightService.getFlightsDepartingBetween("tampa", NOON.minusSeconds(3600), NOON).isEmpty());
+        Assert.assertNull(flightService.getFlightsDepartingBetween("tampa", NOON, NOON));
+    }
+
+    /**
+     * The time window query should be a range scan of the (departure_key, departure_time) index.
+     */
+    @Test
+    public void flightDAO_DepartureWindowUsesIndexTest1() throws SQLException {
+        PreparedStatement ps = ConnectionUtil.getConnection().prepareStatement("EXPLAIN SELECT * FROM flight " +
+                "WHERE departure_key = ? AND departure_time >= ? AND departure_time < ? AND retired = FALSE " +
+                "ORDER BY departure_time");
+        ps.setString(1, "tampa");
+        ps.setObject(2, NOON.atOffset(ZoneOffset.UTC));
+        ps.setObject(3, NOON.plusSeconds(7200).atOffset(ZoneOffset.UTC));
+        ResultSet rs = ps.executeQuery();
+        Assert.assertTrue(rs.next());
+        Assert.assertTrue(rs.getString(1).toUpperCase().contains("FLIGHT_DEPARTURE_TIME_IDX"));
+    }
+
+    /**
+     * Updates should replace the times, and patches should change only the times they set.
+     */
+    @Test
+    public void flightService_UpdateTimesTest1(){
+        Flight flight = flightDAO.insertFlight(scheduled("tampa", "dallas", Duration.ZERO));
+        Flight delayed = flightService.patchFlight(flight.getFlight_id(),
+                new FlightPatch(null, null, null, NOON.plusSeconds(1800), null));
+        Assert.assertEquals(NOON.plusSeconds(1800), delayed.getDeparture_time());
+        Assert.assertEquals(flight.getArrival_time(), delayed.getArrival_time());
+        Assert.assertEquals(delayed, flightDAO.getFlightById(flight.getFlight_id()));
+
+        Flight replaced = flightService.updateFlight(flight.getFlight_id(), new Flight("tampa", "dallas"));
+        Assert.assertNull(replaced.getDeparture_time());
+    }
+
+    /**
+     * Snapshots should keep the times of flights.
+     */
+    @Test
+    public void flightSnapshot_TimesTest1() throws IOException {
+        List<Flight> flights = List.of(
+                new Flight(1, "tampa", "dallas", NOON, NOON.plusSeconds(7200)),
+                new Flight(2, "tampa", "reston", null, null),
+                new Flight(3, "reston", "tampa", NOON.minusSeconds(86400), null),
+                new Flight(4, "dallas", "tampa", null, NOON));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FlightSnapshot.write(flights, Channels.newChannel(out));
+        Assert.assertEquals(flights, FlightSnapshot.read(Channels.newChannel(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    /**
+     * A time window that cannot be parsed, or is empty, should be rejected with a 400 status rather than a 500.
+     */
+    @Test
+    public void flightController_DepartingBetweenBadWindowTest1() throws Exception {
+        System.setProperty("flights.warmup.iterations", "0");
+        Javalin app = new FlightController().startAPI().start(0);
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            for(String query : List.of("from=tomorrow", "from=2026-10-20T00:00:00Z&to=2026-10-19T00:00:00Z")){
+                HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(
+                        "http://localhost:" + app.port() + "/flights/departing/tampa?" + query)).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                Assert.assertEquals(query, 400, response.statusCode());
+            }
+        } finally {
+            app.stop();
+            System.clearProperty("flights.warmup.iterations");
+        }
+    }
+}
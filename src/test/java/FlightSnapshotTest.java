@@ -0,0 +1,227 @@
+import Application.Application;
+import Application.DAO.FlightArchiveDAO;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Model.FlightChange;
+import Application.Service.FlightChangeFeed;
+import Application.Service.FlightService;
+import Application.Service.SnapshotService;
+import Application.Util.FlightSnapshot;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * This class tests writing and loading flight snapshots, using the dummy data inserted as part of the
+ * Application.databaseSetup() method.
+ */
+public class FlightSnapshotTest {
+    public FlightDAO flightDAO;
+    public SnapshotService snapshotService;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        snapshotService = new SnapshotService();
+    }
+
+    private static byte[] write(List<Flight> flights) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        FlightSnapshot.write(flights, Channels.newChannel(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static List<Flight> read(byte[] snapshot) throws IOException {
+        return FlightSnapshot.read(Channels.newChannel(new ByteArrayInputStream(snapshot)));
+    }
+
+    /**
+     * A snapshot should read back to the same flights, in flight_id order, even across gaps in the IDs and when it
+     * is larger than the internal buffers.
+     */
+    @Test
+    public void flightSnapshot_RoundTripTest1() throws IOException {
+        List<Flight> flights = new ArrayList<>();
+        for(int i = 0; i < 50000; i++){
+            flights.add(new Flight(i * 3 + 1, "city" + (i % 97), "city" + (i % 89)));
+        }
+        flights.add(new Flight(Integer.MAX_VALUE, "s\u00e3o paulo", "tampa"));
+        List<Flight> reversed = new ArrayList<>(flights);
+        Collections.reverse(reversed);
+        byte[] snapshot = write(reversed);
+        Assert.assertEquals(flights, read(snapshot));
+        //ids delta-encoded in one byte, two city indexes of at most two bytes each and one byte per absent time
+        Assert.assertTrue(snapshot.length < flights.size() * 7);
+    }
+
+    /**
+     * A snapshot with a flipped byte should be rejected instead of silently loading wrong flights.
+     */
+    @Test
+    public void flightSnapshot_ChecksumTest1() throws IOException {
+        byte[] snapshot = write(flightDAO.getAllFlights());
+        snapshot[snapshot.length - 6] ^= 1;
+        try {
+            read(snapshot);
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("checksum"));
+        }
+    }
+
+    /**
+     * @return the given snapshot body with its magic, version 2 and a valid checksum, so that only the body is wrong.
+     */
+    private static byte[] withChecksum(int... body){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.writeBytes(new byte[]{'F', 'L', 'S', 'N', FlightSnapshot.VERSION});
+        for(int b : body){
+            bytes.write(b);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        bytes.writeBytes(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Snapshots that pass their checksum but have out of range city indexes, counts or lengths, or trailing bytes,
+     * should be rejected with an IOException (which PUT /snapshot answers with a 400) rather than an unchecked error.
+     */
+    @Test
+    public void flightSnapshot_MalformedTest1() throws IOException {
+        //the well-formed snapshot the malformed ones are variations of
+        Assert.assertEquals(List.of(new Flight(1, "a", "a")), read(withChecksum(1, 1, 'a', 1, 2, 0, 0, 0, 0)));
+        List<byte[]> malformed = List.of(
+                //one city "a", one flight departing from city 5
+                withChecksum(1, 1, 'a', 1, 2, 5, 0, 0, 0),
+                //a city count of 2^31
+                withChecksum(0x80, 0x80, 0x80, 0x80, 0x08),
+                //a city name longer than the snapshot
+                withChecksum(1, 100, 'a'),
+                //a flight count larger than the snapshot could hold
+                withChecksum(1, 1, 'a', 2, 2, 0, 0, 0, 0),
+                //a departure time past the range of Instant
+                withChecksum(1, 1, 'a', 1, 2, 0, 0, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0x7f, 0),
+                //a byte left over after the last flight
+                withChecksum(1, 1, 'a', 1, 2, 0, 0, 0, 0, 0),
+                //too short to hold a checksum
+                new byte[]{'F', 'L'});
+        for(byte[] snapshot : malformed){
+            try {
+                read(snapshot);
+                Assert.fail();
+            } catch (IOException e) {
+                Assert.assertNotNull(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Importing a snapshot should replace the flight table with the snapshot's flights, keeping their IDs, and
+     * flights inserted afterwards should get an ID past the highest loaded one.
+     */
+    @Test
+    public void snapshotService_ExportImportTest1() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Assert.assertEquals(6, snapshotService.exportSnapshot(Channels.newChannel(bytes)));
+
+        flightDAO.updateFlight(1, new Flight("reston", "dallas"));
+        flightDAO.insertFlight(new Flight("tampa", "morgantown"));
+
+        int loaded = snapshotService.importSnapshot(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertEquals(6, loaded);
+        List<Flight> allFlights = flightDAO.getAllFlights();
+        Assert.assertEquals(6, allFlights.size());
+        Assert.assertTrue(allFlights.contains(new Flight(1, "tampa", "dallas")));
+        Assert.assertTrue(allFlights.contains(new Flight(6, "dallas", "tampa")));
+        Assert.assertEquals(new Flight(7, "tampa", "reston"), flightDAO.insertFlight(new Flight("tampa", "reston")));
+    }
+
+    /**
+     * Importing a snapshot should keep the retired flights that are not archived yet, unless the snapshot has a
+     * flight with the same ID, and new flights should get an ID past the retired ones too.
+     */
+    @Test
+    public void snapshotService_ImportKeepsRetiredTest1() throws IOException {
+        FlightService flightService = new FlightService();
+        flightService.retireFlight(2);
+        flightService.retireFlight(6);
+        Flight added = flightDAO.insertFlight(new Flight("tampa", "boston"));
+        flightService.retireFlight(added.getFlight_id());
+
+        byte[] snapshot = write(List.of(new Flight(1, "tampa", "dallas"), new Flight(2, "tampa", "denver")));
+        Assert.assertEquals(2, snapshotService.importSnapshot(Channels.newChannel(new ByteArrayInputStream(snapshot))));
+
+        Assert.assertEquals(List.of(new Flight(1, "tampa", "dallas"), new Flight(2, "tampa", "denver")),
+                flightDAO.getAllFlights());
+        Assert.assertEquals(List.of(new Flight(6, "dallas", "tampa"), added),
+                new FlightArchiveDAO().getRetiredFlights(0));
+        Assert.assertEquals(added.getFlight_id() + 1, flightDAO.insertFlight(new Flight("tampa", "reston"))
+                .getFlight_id());
+    }
+
+    /**
+     * Replacing the flights through the FlightService should rebuild its statistics and city index from the new
+     * table, and tell change feed subscribers to reset after the changes published before.
+     */
+    @Test
+    public void flightService_ReplaceAllFlightsTest1() throws IOException, InterruptedException {
+        FlightService flightService = new FlightService();
+        List<Long> resets = new CopyOnWriteArrayList<>();
+        List<FlightChange> changes = new CopyOnWriteArrayList<>();
+        flightService.getChangeFeed().subscribe(-1, new FlightChangeFeed.Sink() {
+            @Override
+            public void send(FlightChange change) {
+                changes.add(change);
+            }
+
+            @Override
+            public void gap(long firstMissed, long lastMissed) {
+            }
+
+            @Override
+            public void reset(long resumeAfter) {
+                resets.add(resumeAfter);
+            }
+
+            @Override
+            public void keepAlive() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        flightService.addFlight(new Flight("tampa", "boston"));
+
+        List<Flight> flights = snapshotService.readSnapshot(Channels.newChannel(new ByteArrayInputStream(
+                write(List.of(new Flight(1, "denver", "boston"))))));
+        Assert.assertEquals(1, flightService.replaceAllFlights(snapshotService, flights));
+
+        Assert.assertEquals(List.of(new Flight(1, "denver", "boston")), flightDAO.getAllFlights());
+        Assert.assertEquals(1, flightService.getRouteStatistics().getRouteCount("denver", "boston").getCount());
+        Assert.assertEquals(0, flightService.getRouteStatistics().getRouteCount("tampa", "dallas").getCount());
+        Assert.assertEquals(List.of("denver"), flightService.getCityIndex().findByPrefix("den", 10));
+        long deadline = System.currentTimeMillis() + 5000;
+        while(resets.isEmpty() && System.currentTimeMillis() < deadline){
+            Thread.sleep(5);
+        }
+        Assert.assertEquals(List.of(2L), resets);
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(1, changes.get(0).getSequence());
+    }
+}
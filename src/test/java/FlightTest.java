@@ -0,0 +1,66 @@
+import Application.Model.Flight;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This class tests the Flight model on its own: equality, hashing and its JSON form. The ObjectMapper is configured
+ * like the one of the FlightController.
+ */
+public class FlightTest {
+    private static final Instant NOON = Instant.parse("2026-10-19T12:00:00Z");
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    /**
+     * Flights with the same fields should be equal and have the same hash code, and a difference in any one field
+     * should make them unequal. Times are compared to the second.
+     */
+    @Test
+    public void flight_EqualsHashCodeTest1(){
+        Flight flight = new Flight(1, "tampa", "dallas", NOON, NOON.plusSeconds(7200));
+        Flight same = new Flight(1, "tampa", "dallas", NOON.plusMillis(300), NOON.plusSeconds(7200));
+        Assert.assertEquals(flight, same);
+        Assert.assertEquals(flight.hashCode(), same.hashCode());
+        Assert.assertEquals(new Flight(1, "tampa", "dallas"), new Flight(1, "tampa", "dallas", null, null));
+
+        List<Flight> different = List.of(
+                new Flight(2, "tampa", "dallas", NOON, NOON.plusSeconds(7200)),
+                new Flight(1, "reston", "dallas", NOON, NOON.plusSeconds(7200)),
+                new Flight(1, "tampa", "reston", NOON, NOON.plusSeconds(7200)),
+                new Flight(1, "tampa", "dallas", NOON.plusSeconds(1), NOON.plusSeconds(7200)),
+                new Flight(1, "tampa", "dallas", NOON, null),
+                new Flight(1, null, "dallas", NOON, NOON.plusSeconds(7200)));
+        for(Flight other : different){
+            Assert.assertNotEquals(other.toString(), flight, other);
+            Assert.assertNotEquals(other.toString(), other, flight);
+        }
+        Assert.assertNotEquals(flight, null);
+        Assert.assertEquals(flight.withFlight_id(2), different.get(0));
+    }
+
+    /**
+     * A flight should read back from its JSON unchanged, with times written as ISO-8601 strings, and a flight
+     * posted without an ID or a schedule should read with flight_id 0 and null times.
+     */
+    @Test
+    public void flight_JsonRoundTripTest1() throws JsonProcessingException {
+        Flight flight = new Flight(7, "s\u00e3o paulo", "tampa", NOON, NOON.plusSeconds(7200));
+        String json = JSON_MAPPER.writeValueAsString(flight);
+        Assert.assertTrue(json.contains("\"departure_time\":\"2026-10-19T12:00:00Z\""));
+        Assert.assertEquals(flight, JSON_MAPPER.readValue(json, Flight.class));
+
+        Flight unscheduled = new Flight(3, "reston", "morgantown");
+        Assert.assertEquals(unscheduled, JSON_MAPPER.readValue(JSON_MAPPER.writeValueAsString(unscheduled),
+                Flight.class));
+        Assert.assertEquals(new Flight(0, "tampa", "dallas"),
+                JSON_MAPPER.readValue("{\"departure_city\":\"tampa\",\"arrival_city\":\"dallas\"}", Flight.class));
+    }
+}
@@ -0,0 +1,75 @@
+import Application.Application;
+import Application.Controller.FlightController;
+import Application.DAO.FlightDAO;
+import Application.Model.Flight;
+import Application.Service.FlightService;
+import io.javalin.Javalin;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+/**
+ * This class tests the warm-up of the API and the readiness check, using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method (flights 1 to 6).
+ */
+public class FlightWarmUpTest {
+    public FlightDAO flightDAO;
+    public FlightService flightService;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+        flightService = new FlightService();
+    }
+
+    /**
+     * Flights with a missing or blank city should be rejected before anything is written, which is what lets the
+     * warm-up exercise POST and PUT without changing data.
+     */
+    @Test
+    public void flightService_RejectBlankCitiesTest1(){
+        Assert.assertNull(flightService.addFlight(new Flight(" ", "dallas")));
+        Assert.assertNull(flightService.addFlight(new Flight("tampa", null)));
+        Assert.assertNull(flightService.updateFlight(1, new Flight("tampa", "")));
+        Assert.assertEquals(6, flightDAO.getAllFlights().size());
+        Assert.assertEquals(new Flight(1, "tampa", "dallas"), flightDAO.getFlightById(1));
+    }
+
+    /**
+     * The API should only report itself ready once warm-up has run, and warm-up should leave every flight as it was.
+     */
+    @Test
+    public void flightController_WarmUpTest1() throws Exception {
+        List<Flight> before = flightDAO.getAllFlights();
+        System.setProperty("flights.warmup.iterations", "3");
+        FlightController flightController = new FlightController();
+        Javalin app = flightController.startAPI();
+        try {
+            Assert.assertFalse(flightController.isReady());
+            app.start(0);
+            long deadline = System.currentTimeMillis() + 30000;
+            while(!flightController.isReady() && System.currentTimeMillis() < deadline){
+                Thread.sleep(50);
+            }
+            Assert.assertTrue(flightController.isReady());
+
+            HttpResponse<String> ready = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/ready")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, ready.statusCode());
+            Assert.assertEquals("{\"ready\":true}", ready.body());
+            Assert.assertEquals(before, flightDAO.getAllFlights());
+        } finally {
+            app.stop();
+            System.clearProperty("flights.warmup.iterations");
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import Application.Application;
+import Application.Model.Flight;
+import Application.Model.RouteCount;
+import Application.Service.FlightService;
+import Application.Service.RouteStatistics;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * This class tests the route statistics using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method.
+ * It contains the following records:
+ *      (1, 'tampa', 'dallas'),
+ *      (2, 'tampa', 'reston'),
+ *      (3, 'reston', 'morgantown'),
+ *      (4, 'morgantown', 'dallas'),
+ *      (5, 'tampa', 'dallas'),
+ *      (6, 'dallas', 'tampa')
+ */
+public class RouteStatisticsTest {
+    public FlightService flightService;
+    public RouteStatistics routeStatistics;
+
+    @Before
+    public void setUp(){
+        Application.databaseSetup();
+        flightService = new FlightService();
+        routeStatistics = flightService.getRouteStatistics();
+    }
+
+    /**
+     * The counters should be built from the flights already in the database.
+     */
+    @Test
+    public void routeStatistics_InitialCountsTest1(){
+        Assert.assertEquals(3, routeStatistics.getDepartureCount("tampa"));
+        Assert.assertEquals(3, routeStatistics.getArrivalCount("dallas"));
+        Assert.assertEquals(0, routeStatistics.getDepartureCount("atlanta"));
+        Assert.assertEquals(new RouteCount("tampa", "dallas", 2), routeStatistics.getRouteCount("tampa", "dallas"));
+    }
+
+    /**
+     * The top routes should be ordered by descending count, then by city name, and limited to k entries.
+     */
+    @Test
+    public void routeStatistics_TopRoutesTest1(){
+        List<RouteCount> top = routeStatistics.getTopRoutes(2);
+        Assert.assertEquals(2, top.size());
+        Assert.assertEquals(new RouteCount("tampa", "dallas", 2), top.get(0));
+        Assert.assertEquals(new RouteCount("dallas", "tampa", 1), top.get(1));
+        Assert.assertEquals(5, routeStatistics.getTopRoutes(100).size());
+    }
+
+    /**
+     * Adding a flight through the service should increment its counters.
+     */
+    @Test
+    public void routeStatistics_AddFlightTest1(){
+        flightService.addFlight(new Flight("dallas", "tampa"));
+        flightService.addFlight(new Flight("dallas", "tampa"));
+        Assert.assertEquals(3, routeStatistics.getDepartureCount("dallas"));
+        Assert.assertEquals(new RouteCount("dallas", "tampa", 3), routeStatistics.getTopRoutes(1).get(0));
+    }
+
+    /**
+     * Updating a flight to a different route should move it from the old counters to the new ones, and a route
+     * whose last flight moves away should disappear from the top routes.
+     */
+    @Test
+    public void routeStatistics_UpdateFlightTest1(){
+        flightService.updateFlight(6, new Flight("reston", "morgantown"));
+        Assert.assertEquals(0, routeStatistics.getDepartureCount("dallas"));
+        Assert.assertEquals(2, routeStatistics.getDepartureCount("reston"));
+        Assert.assertEquals(0, routeStatistics.getArrivalCount("tampa"));
+        Assert.assertEquals(new RouteCount("reston", "morgantown", 2),
+                routeStatistics.getRouteCount("reston", "morgantown"));
+        for(RouteCount routeCount : routeStatistics.getTopRoutes(10)){
+            Assert.assertNotEquals("dallas", routeCount.getDeparture_city());
+        }
+    }
+}
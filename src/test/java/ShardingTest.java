@@ -0,0 +1,267 @@
+import Application.Application;
+import Application.DAO.FlightDAO;
+import Application.DAO.FlightImportDAO;
+import Application.FlightImporter;
+import Application.Model.Flight;
+import Application.Model.FlightPatch;
+import Application.Model.FlightPatchResult;
+import Application.Service.FlightService;
+import Application.Util.ConnectionUtil;
+import Application.Util.FlightFileParser;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class tests the FlightDAO with flights spread over three shards, using the dummy data inserted as part of the
+ * Application.Application.databaseSetup() method. The flight IDs depend on which shard each departure city hashes
+ * to, so the tests check the invariants of sharding rather than specific IDs.
+ */
+public class ShardingTest {
+    public FlightDAO flightDAO;
+
+    @Before
+    public void setUp(){
+        ConnectionUtil.setShardCount(3);
+        Application.databaseSetup();
+        flightDAO = new FlightDAO();
+    }
+
+    @After
+    public void tearDown(){
+        ConnectionUtil.setShardCount(1);
+        Application.databaseSetup();
+    }
+
+    /**
+     * @return a city whose flights are stored in a different shard than the given city.
+     */
+    private static String cityInAnotherShard(String city){
+        for(int i = 0; ; i++){
+            String candidate = "city" + i;
+            if(ConnectionUtil.shardForCity(candidate) != ConnectionUtil.shardForCity(city)){
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * getAllFlights should gather the flights of every shard in flight_id order, with globally unique IDs, and every
+     * flight should be stored in the shard of its departure city.
+     */
+    @Test
+    public void sharding_GetAllFlightsTest1(){
+        List<Flight> allFlights = flightDAO.getAllFlights();
+        Assert.assertEquals(6, allFlights.size());
+        Set<Integer> ids = new HashSet<>();
+        for(int i = 0; i < allFlights.size(); i++){
+            Flight flight = allFlights.get(i);
+            Assert.assertTrue(ids.add(flight.getFlight_id()));
+            if(i > 0){
+                Assert.assertTrue(allFlights.get(i - 1).getFlight_id() < flight.getFlight_id());
+            }
+            Assert.assertEquals(ConnectionUtil.shardForCity(flight.getDeparture_city()),
+                    ConnectionUtil.shardForFlightId(flight.getFlight_id()));
+            Assert.assertEquals(flight, flightDAO.getFlightById(flight.getFlight_id()));
+        }
+    }
+
+    /**
+     * If one shard cannot be read, getAllFlights should fail rather than return the flights of the other shards as
+     * if they were the whole table.
+     */
+    @Test
+    public void sharding_GetAllFlightsShardFailureTest1() throws SQLException {
+        ConnectionUtil.getConnection(1).prepareStatement("DROP TABLE flight").executeUpdate();
+        Assert.assertNull(flightDAO.getAllFlights());
+    }
+
+    /**
+     * A route lookup should find every flight of the route in its shard.
+     */
+    @Test
+    public void sharding_GetFlightsFromCityToCityTest1(){
+        List<Flight> flights = flightDAO.getAllFlightsFromCityToCity("tampa", "dallas");
+        Assert.assertEquals(2, flights.size());
+        for(Flight flight : flights){
+            Assert.assertEquals("tampa", flight.getDeparture_city());
+            Assert.assertEquals("dallas", flight.getArrival_city());
+        }
+    }
+
+    /**
+     * An inserted flight should get an ID from the sequence of its departure city's shard and be retrievable.
+     */
+    @Test
+    public void sharding_InsertFlightTest1(){
+        Flight inserted = flightDAO.insertFlight(new Flight("tampa", "morgantown"));
+        Assert.assertNotNull(inserted);
+        Assert.assertEquals(ConnectionUtil.shardForCity("tampa"), ConnectionUtil.shardForFlightId(inserted.getFlight_id()));
+        Assert.assertEquals(inserted, flightDAO.getFlightById(inserted.getFlight_id()));
+        Assert.assertEquals(7, flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * Changing the departure city of a flight to a city of another shard should move the flight, keeping its ID.
+     */
+    @Test
+    public void sharding_UpdateFlightAcrossShardsTest1(){
+        Flight original = flightDAO.getAllFlightsFromCityToCity("dallas", "tampa").get(0);
+        String newDeparture = cityInAnotherShard("dallas");
+        flightDAO.updateFlight(original.getFlight_id(), new Flight(newDeparture, "tampa"));
+
+        Flight expected = new Flight(original.getFlight_id(), newDeparture, "tampa");
+        Assert.assertEquals(expected, flightDAO.getFlightById(original.getFlight_id()));
+        Assert.assertTrue(flightDAO.getAllFlightsFromCityToCity("dallas", "tampa").isEmpty());
+        Assert.assertEquals(List.of(expected), flightDAO.getAllFlightsFromCityToCity(newDeparture, "tampa"));
+        Assert.assertEquals(6, flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * A flight moved to another shard, by an update or by a patch, should keep its created_at, so that the move does
+     * not restart its retention period.
+     */
+    @Test
+    public void sharding_MoveKeepsCreatedAtTest1() throws SQLException {
+        Timestamp created = Timestamp.valueOf("2020-01-01 00:00:00");
+        for(int shard = 0; shard < ConnectionUtil.getShardCount(); shard++){
+            PreparedStatement age = ConnectionUtil.getConnection(shard).prepareStatement(
+                    "UPDATE flight SET created_at = ?");
+            age.setTimestamp(1, created);
+            age.executeUpdate();
+        }
+        Flight updated = flightDAO.getAllFlightsFromCityToCity("dallas", "tampa").get(0);
+        String updatedDeparture = cityInAnotherShard("dallas");
+        flightDAO.updateFlight(updated.getFlight_id(), new Flight(updatedDeparture, "tampa"));
+        Flight patched = flightDAO.getAllFlightsFromCityToCity("reston", "morgantown").get(0);
+        String patchedDeparture = cityInAnotherShard("reston");
+        new FlightService().patchFlight(patched.getFlight_id(), new FlightPatch(patchedDeparture, null));
+
+        for(Object[] moved : List.of(new Object[]{updated, updatedDeparture}, new Object[]{patched, patchedDeparture})){
+            PreparedStatement select = ConnectionUtil.getConnection(ConnectionUtil.shardForCity((String) moved[1]))
+                    .prepareStatement("SELECT created_at FROM flight WHERE flight_id = ?");
+            select.setInt(1, ((Flight) moved[0]).getFlight_id());
+            ResultSet rs = select.executeQuery();
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(created, rs.getTimestamp(1));
+        }
+        Assert.assertEquals(6, flightDAO.getAllFlights().size());
+    }
+
+    /**
+     * A flight left in two shards by a move that failed before its old copy was deleted should be listed once, with
+     * the copy a lookup by ID returns.
+     */
+    @Test
+    public void sharding_HalfMovedFlightListedOnceTest1() throws SQLException {
+        Flight original = flightDAO.getAllFlightsFromCityToCity("dallas", "tampa").get(0);
+        String newDeparture = cityInAnotherShard("dallas");
+        PreparedStatement copy = ConnectionUtil.getConnection(ConnectionUtil.shardForCity(newDeparture))
+                .prepareStatement("INSERT INTO flight (flight_id, departure_city, arrival_city) VALUES (?, ?, ?)");
+        copy.setInt(1, original.getFlight_id());
+        copy.setString(2, newDeparture);
+        copy.setString(3, "tampa");
+        copy.executeUpdate();
+
+        List<Flight> allFlights = flightDAO.getAllFlights();
+        Assert.assertEquals(6, allFlights.size());
+        Assert.assertEquals(6, new HashSet<>(allFlights).size());
+        Assert.assertTrue(allFlights.contains(flightDAO.getFlightById(original.getFlight_id())));
+    }
+
+    /**
+     * The bulk importer should spread imported flights over the shards of their departure cities.
+     */
+    @Test
+    public void sharding_ImportTest1() throws IOException {
+        Path file = Files.createTempFile("flights", ".csv");
+        try {
+            Files.write(file, "tampa,dallas\nreston,tampa\ndallas,reston\n".getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(3, new FlightImporter().importFile(file, FlightFileParser.Format.CSV, true));
+            Assert.assertEquals(9, flightDAO.getAllFlights().size());
+            Assert.assertEquals(3, flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A predicate without a departure city matches flights in every shard. When the patch moves them all to one
+     * shard, each flight should be reported (and counted) once, not again by the UPDATE of the shard it moved to.
+     */
+    @Test
+    public void sharding_PatchFlightsWhereMoveTest1(){
+        FlightService flightService = new FlightService();
+        String newDeparture = cityInAnotherShard("tampa");
+        List<FlightPatchResult> results = flightService.patchFlightsWhere(new FlightPatch(null, "dallas"),
+                new FlightPatch(newDeparture, null));
+
+        Set<Integer> ids = new HashSet<>();
+        for(FlightPatchResult result : results){
+            Assert.assertEquals(FlightPatchResult.UPDATED, result.getStatus());
+            Assert.assertTrue("reported twice: " + result.getFlight_id(), ids.add(result.getFlight_id()));
+            Assert.assertEquals(result.getFlight(), flightDAO.getFlightById(result.getFlight_id()));
+        }
+        Assert.assertEquals(3, ids.size());
+        Assert.assertEquals(3, flightDAO.getAllFlightsFromCityToCity(newDeparture, "dallas").size());
+        Assert.assertEquals(3, flightService.getRouteStatistics().getRouteCount(newDeparture, "dallas").getCount());
+        Assert.assertEquals(0, flightService.getRouteStatistics().getRouteCount("tampa", "dallas").getCount());
+    }
+
+    /**
+     * When one shard fails during a predicate patch, the flights of the shards that committed should still be
+     * reported and counted, followed by a "failed" outcome.
+     */
+    @Test
+    public void sharding_PatchFlightsWherePartialFailureTest1() throws SQLException {
+        FlightService flightService = new FlightService();
+        int failing = (ConnectionUtil.shardForCity("tampa") + 1) % ConnectionUtil.getShardCount();
+        ConnectionUtil.getConnection(failing).prepareStatement("DROP TABLE flight").executeUpdate();
+
+        List<FlightPatchResult> results = flightService.patchFlightsWhere(new FlightPatch(null, "dallas"),
+                new FlightPatch(null, "reston"));
+
+        FlightPatchResult last = results.get(results.size() - 1);
+        Assert.assertEquals(FlightPatchResult.FAILED, last.getStatus());
+        Assert.assertNull(last.getFlight_id());
+        List<Integer> updated = new ArrayList<>();
+        for(FlightPatchResult result : results.subList(0, results.size() - 1)){
+            Assert.assertEquals(FlightPatchResult.UPDATED, result.getStatus());
+            updated.add(result.getFlight_id());
+        }
+        List<Flight> moved = flightDAO.getAllFlightsFromCityToCity("tampa", "reston");
+        Assert.assertEquals(3, moved.size());
+        Assert.assertTrue(updated.size() >= 2);
+        Assert.assertEquals(3, flightService.getRouteStatistics().getRouteCount("tampa", "reston").getCount());
+    }
+
+    /**
+     * Replacing all flights should stage every shard before committing any, so a shard that fails leaves every
+     * other shard as it was.
+     */
+    @Test
+    public void sharding_ReplaceAllFlightsShardFailureTest1() throws SQLException {
+        int failing = (ConnectionUtil.shardForCity("tampa") + 1) % ConnectionUtil.getShardCount();
+        ConnectionUtil.getConnection(failing).prepareStatement("DROP TABLE flight").executeUpdate();
+
+        Assert.assertFalse(new FlightImportDAO().replaceAllFlights(List.of(new Flight(100, "tampa", "boston")), 10, 0));
+        Assert.assertEquals(2, flightDAO.getAllFlightsFromCityToCity("tampa", "dallas").size());
+        Assert.assertEquals(1, flightDAO.getAllFlightsFromCityToCity("tampa", "reston").size());
+        Assert.assertTrue(flightDAO.getAllFlightsFromCityToCity("tampa", "boston").isEmpty());
+    }
+}